@@ -0,0 +1,85 @@
+package com.example.calvin.demo;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+
+/**
+ * The color background of a {@link DocumentView}, filled with the bottom right corner left out. The corner is part of the
+ * filled shape rather than clipped or cleared afterwards, so its edge is anti-aliased without an offscreen layer on every
+ * canvas. It still is a {@link ColorDrawable}, so the color can be changed through {@link DocumentView#setBackgroundColor(int)}
+ * as usual.
+ */
+class DecorColorDrawable extends ColorDrawable {
+
+    //The paint the shape is filled with
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    //The bounds without the bottom right corner
+    private final Path mPath = new Path();
+
+    //The size of the bottom right corner that is left out
+    private float mDecorSize;
+
+    /**
+     * @param color the background color.
+     */
+    DecorColorDrawable(int color) {
+        super(color);
+    }
+
+    /**
+     * Set the size of the bottom right corner that is left out.
+     * @param decorSize the size of the corner in pixel.
+     */
+    void setDecorSize(float decorSize) {
+        if (mDecorSize == decorSize) {
+            return;
+        }
+        mDecorSize = decorSize;
+        updatePath(getBounds());
+        invalidateSelf();
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        updatePath(bounds);
+    }
+
+    /**
+     * Rebuild the shape for the given bounds.
+     * @param bounds the bounds of the drawable.
+     */
+    private void updatePath(Rect bounds) {
+        mPath.rewind();
+        mPath.moveTo(bounds.left, bounds.top);
+        mPath.lineTo(bounds.right, bounds.top);
+        mPath.lineTo(bounds.right, bounds.bottom - mDecorSize);
+        mPath.lineTo(bounds.right - mDecorSize, bounds.bottom);
+        mPath.lineTo(bounds.left, bounds.bottom);
+        mPath.close();
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        int color = getColor();
+        if (color >>> 24 != 0) {
+            mPaint.setColor(color);
+            canvas.drawPath(mPath, mPaint);
+        }
+    }
+
+    /**
+     * The corner is transparent, so the background is never opaque. That holds even while the corner is empty, since a view
+     * only asks for the opacity when its background is set, and the corner may grow afterwards.
+     * {@inheritDoc}
+     */
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -2,15 +2,25 @@ package com.example.calvin.demo;
 
 import android.app.Activity;
 import android.graphics.Color;
+import android.os.Build;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.CompoundButton;
 import android.widget.EditText;
 import android.widget.FrameLayout;
+import android.widget.TextView;
 
 public class DemoActivity extends Activity {
 
+    //The number of frames recorded by a stress run, 10 seconds at 60 frames per second
+    private static final int STRESS_FRAMES = 600;
+
+    //The stress mode, null before Jelly Bean
+    private StressMode mStressMode;
+
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -43,6 +53,31 @@ public class DemoActivity extends Activity {
         final EditText subtitleText = findViewById(R.id.subtitleText);
         Button subtitleSizeButton = findViewById(R.id.subtitleSizeButton);
         final EditText subtitleSizeText = findViewById(R.id.subtitleSizeText);
+        final Button stressButton = findViewById(R.id.stressButton);
+        final TextView stressResultText = findViewById(R.id.stressResultText);
+        CheckBox livePreviewCheckBox = findViewById(R.id.livePreviewCheckBox);
+
+        //Apply the edits of all fields once per frame while live preview is checked.
+        final LivePreview livePreview = new LivePreview(documentView);
+        livePreview.bind(LivePreview.FIELD_BACKGROUND_COLOR, backgroundColorText);
+        livePreview.bind(LivePreview.FIELD_WIDTH, widthText);
+        livePreview.bind(LivePreview.FIELD_HEIGHT, heightText);
+        livePreview.bind(LivePreview.FIELD_BORDER_COLOR, borderColorText);
+        livePreview.bind(LivePreview.FIELD_BORDER_WIDTH, borderWidthText);
+        livePreview.bind(LivePreview.FIELD_DECOR_COLOR, decorColorText);
+        livePreview.bind(LivePreview.FIELD_DECOR_SIZE, decorSizeText);
+        livePreview.bind(LivePreview.FIELD_TITLE_COLOR, titleColorText);
+        livePreview.bind(LivePreview.FIELD_TITLE, titleText);
+        livePreview.bind(LivePreview.FIELD_TITLE_SIZE, titleSizeText);
+        livePreview.bind(LivePreview.FIELD_SUBTITLE_COLOR, subtitleColorText);
+        livePreview.bind(LivePreview.FIELD_SUBTITLE, subtitleText);
+        livePreview.bind(LivePreview.FIELD_SUBTITLE_SIZE, subtitleSizeText);
+        livePreviewCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                livePreview.setEnabled(isChecked);
+            }
+        });
 
         backgroundColorButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -215,5 +250,42 @@ public class DemoActivity extends Activity {
                 }
             }
         });
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            float refreshRate = getWindowManager().getDefaultDisplay().getRefreshRate();
+            mStressMode = new StressMode(documentView, refreshRate, new StressMode.Listener() {
+                @Override
+                public void onStressModeFinished(String report) {
+                    stressResultText.setText(report);
+                    stressButton.setText("Stress");
+                }
+            });
+        }
+
+        stressButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (mStressMode == null) {
+                    stressResultText.setText("Stress mode requires Jelly Bean");
+                }else if (mStressMode.isRunning()) {
+                    mStressMode.stop();
+                    stressButton.setText("Stress");
+                }else {
+                    stressResultText.setText("Running…");
+                    stressButton.setText("Stop");
+                    mStressMode.start(STRESS_FRAMES);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (mStressMode != null && mStressMode.isRunning()) {
+            mStressMode.stop();
+            Button stressButton = findViewById(R.id.stressButton);
+            stressButton.setText("Stress");
+        }
     }
 }
@@ -0,0 +1,228 @@
+package com.example.calvin.demo;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.text.TextUtils;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.TypedValue;
+
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Caches the styled attributes of {@link DocumentView} as resolved against a theme, so that inflating many views of the same
+ * style resolves them only once. Entries are kept per theme and keyed by the default style attribute, the default style
+ * resource, the style set on the XML tag and the display density. Views resolved from the same entry share its
+ * {@link DocumentStyle} and with it their paints.
+ *
+ * An entry only covers what comes from the theme and styles. A view whose XML tag sets any style attribute directly has to be
+ * resolved on its own. Title and subtitle text set on the tag are read from the tag instead.
+ */
+final class DocumentAttributeCache {
+
+    //The values of the ellipsize attribute
+    private static final int ELLIPSIZE_NONE = 0;
+    private static final int ELLIPSIZE_START = 1;
+    private static final int ELLIPSIZE_MIDDLE = 2;
+    private static final int ELLIPSIZE_END = 3;
+
+    //The cached entries of each theme
+    private static final WeakHashMap<Resources.Theme, HashMap<Key, Entry>> sEntries = new WeakHashMap<>();
+
+    //The default style of the last used density
+    private static DocumentStyle sDefaults;
+    private static float sDefaultsDensity;
+    private static float sDefaultsScaledDensity;
+
+    private DocumentAttributeCache() {
+    }
+
+    /**
+     * Get a cached entry.
+     * @param theme the theme the attributes are resolved against.
+     * @param defStyleAttr the default style attribute.
+     * @param defStyleRes the default style resource.
+     * @param styleAttr the style set on the XML tag, or 0.
+     * @param metrics the display metrics the dimensions are resolved with.
+     * @return the cached entry, or null if there is none.
+     */
+    static synchronized Entry get(Resources.Theme theme, int defStyleAttr, int defStyleRes, int styleAttr, DisplayMetrics metrics) {
+        HashMap<Key, Entry> entries = sEntries.get(theme);
+        return entries == null ? null : entries.get(new Key(defStyleAttr, defStyleRes, styleAttr, metrics));
+    }
+
+    /**
+     * Cache an entry.
+     * @param theme the theme the attributes have been resolved against.
+     * @param defStyleAttr the default style attribute.
+     * @param defStyleRes the default style resource.
+     * @param styleAttr the style set on the XML tag, or 0.
+     * @param metrics the display metrics the dimensions have been resolved with.
+     * @param entry the entry to be cached.
+     */
+    static synchronized void put(Resources.Theme theme, int defStyleAttr, int defStyleRes, int styleAttr, DisplayMetrics metrics, Entry entry) {
+        HashMap<Key, Entry> entries = sEntries.get(theme);
+        if (entries == null) {
+            entries = new HashMap<>();
+            sEntries.put(theme, entries);
+        }
+        entries.put(new Key(defStyleAttr, defStyleRes, styleAttr, metrics), entry);
+    }
+
+    /**
+     * Get the default style for the given display metrics. The default dimensions are only converted to pixel again when the
+     * density changes.
+     * @param metrics the display metrics to convert the default dimensions with.
+     * @return the default style.
+     */
+    static synchronized DocumentStyle getDefaults(DisplayMetrics metrics) {
+        if (sDefaults == null || sDefaultsDensity != metrics.density || sDefaultsScaledDensity != metrics.scaledDensity) {
+            float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, DocumentStyle.DEFAULT_TEXT_SIZE_IN_SP, metrics);
+            sDefaults = new DocumentStyle.Builder()
+                    .setBorderWidth(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, DocumentStyle.DEFAULT_BORDER_WIDTH_IN_DIP, metrics))
+                    .setDecorSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, DocumentStyle.DEFAULT_DECOR_SIZE_IN_DIP, metrics))
+                    .setTitleSize(textSize)
+                    .setSubtitleSize(textSize)
+                    .build();
+            sDefaultsDensity = metrics.density;
+            sDefaultsScaledDensity = metrics.scaledDensity;
+        }
+        return sDefaults;
+    }
+
+    /**
+     * Resolve the styled attributes of {@link DocumentView}.
+     * @param context the context to resolve the attributes with.
+     * @param attrs the attributes of the XML tag, or null to resolve theme and default styles only.
+     * @param defStyleAttr the default style attribute.
+     * @param defStyleRes the default style resource.
+     * @param textsResolved whether the resolved texts come from theme and styles only, rather than from the XML tag.
+     * @return the resolved entry.
+     */
+    static Entry resolve(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes, boolean textsResolved) {
+        TypedArray array = context.obtainStyledAttributes(attrs, R.styleable.DocumentView, defStyleAttr, defStyleRes);
+        if (array == null) {
+            return new Entry(new DocumentStyle.Builder().build(), DocumentView.RENDER_MODE_CLIP, DocumentView.LAYOUT_QUALITY_FAST,
+                    true, Integer.MAX_VALUE, Integer.MAX_VALUE, null, "", "", textsResolved);
+        }
+        DocumentStyle defaults = getDefaults(context.getResources().getDisplayMetrics());
+        DocumentStyle style = new DocumentStyle.Builder()
+                .setBorderColor(array.getColor(R.styleable.DocumentView_borderColor, defaults.getBorderColor()))
+                .setBorderWidth(array.getDimension(R.styleable.DocumentView_borderWidth, defaults.getBorderWidth()))
+                .setDecorColor(array.getColor(R.styleable.DocumentView_decorColor, defaults.getDecorColor()))
+                .setDecorSize(array.getDimension(R.styleable.DocumentView_decorSize, defaults.getDecorSize()))
+                .setTitleColor(array.getColor(R.styleable.DocumentView_titleColor, defaults.getTitleColor()))
+                .setTitleSize(array.getDimension(R.styleable.DocumentView_titleTextSize, defaults.getTitleSize()))
+                .setSubtitleColor(array.getColor(R.styleable.DocumentView_subtitleColor, defaults.getSubtitleColor()))
+                .setSubtitleSize(array.getDimension(R.styleable.DocumentView_subtitleTextSize, defaults.getSubtitleSize()))
+                .build();
+        int renderMode = array.getInt(R.styleable.DocumentView_renderMode, DocumentView.RENDER_MODE_CLIP);
+        int layoutQuality = array.getInt(R.styleable.DocumentView_layoutQuality, DocumentView.LAYOUT_QUALITY_FAST);
+        boolean clipToViewport = array.getBoolean(R.styleable.DocumentView_clipToViewport, true);
+        int maxTitleLines = array.getInt(R.styleable.DocumentView_maxTitleLines, Integer.MAX_VALUE);
+        int maxSubtitleLines = array.getInt(R.styleable.DocumentView_maxSubtitleLines, Integer.MAX_VALUE);
+        TextUtils.TruncateAt ellipsize = toTruncateAt(array.getInt(R.styleable.DocumentView_ellipsize, ELLIPSIZE_NONE));
+        CharSequence title = array.getText(R.styleable.DocumentView_titleText);
+        CharSequence subtitle = array.getText(R.styleable.DocumentView_subtitleText);
+        array.recycle();
+        return new Entry(style, renderMode, layoutQuality, clipToViewport, maxTitleLines, maxSubtitleLines, ellipsize,
+                title == null ? "" : title, subtitle == null ? "" : subtitle, textsResolved);
+    }
+
+    /**
+     * Convert the value of the ellipsize attribute.
+     * @param ellipsize the attribute value.
+     * @return where to ellipsize, or null for no ellipsizing.
+     */
+    private static TextUtils.TruncateAt toTruncateAt(int ellipsize) {
+        switch (ellipsize) {
+            case ELLIPSIZE_START:
+                return TextUtils.TruncateAt.START;
+            case ELLIPSIZE_MIDDLE:
+                return TextUtils.TruncateAt.MIDDLE;
+            case ELLIPSIZE_END:
+                return TextUtils.TruncateAt.END;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The resolved styled attributes.
+     */
+    static final class Entry {
+
+        final DocumentStyle style;
+        final int renderMode;
+        final int layoutQuality;
+        final boolean clipToViewport;
+        final int maxTitleLines;
+        final int maxSubtitleLines;
+        final TextUtils.TruncateAt ellipsize;
+        final CharSequence title;
+        final CharSequence subtitle;
+
+        //Whether title and subtitle come from theme and styles only. If not, they can't be used for other views.
+        final boolean textsResolved;
+
+        Entry(DocumentStyle style, int renderMode, int layoutQuality, boolean clipToViewport, int maxTitleLines,
+              int maxSubtitleLines, TextUtils.TruncateAt ellipsize, CharSequence title, CharSequence subtitle,
+              boolean textsResolved) {
+            this.style = style;
+            this.renderMode = renderMode;
+            this.layoutQuality = layoutQuality;
+            this.clipToViewport = clipToViewport;
+            this.maxTitleLines = maxTitleLines;
+            this.maxSubtitleLines = maxSubtitleLines;
+            this.ellipsize = ellipsize;
+            this.title = title;
+            this.subtitle = subtitle;
+            this.textsResolved = textsResolved;
+        }
+    }
+
+    /**
+     * The key of an entry within a theme.
+     */
+    private static final class Key {
+
+        private final int mDefStyleAttr;
+        private final int mDefStyleRes;
+        private final int mStyleAttr;
+        private final float mDensity;
+        private final float mScaledDensity;
+
+        private Key(int defStyleAttr, int defStyleRes, int styleAttr, DisplayMetrics metrics) {
+            mDefStyleAttr = defStyleAttr;
+            mDefStyleRes = defStyleRes;
+            mStyleAttr = styleAttr;
+            mDensity = metrics.density;
+            mScaledDensity = metrics.scaledDensity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mDefStyleAttr == key.mDefStyleAttr
+                    && mDefStyleRes == key.mDefStyleRes
+                    && mStyleAttr == key.mStyleAttr
+                    && Float.compare(mDensity, key.mDensity) == 0
+                    && Float.compare(mScaledDensity, key.mScaledDensity) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = mDefStyleAttr;
+            result = 31 * result + mDefStyleRes;
+            result = 31 * result + mStyleAttr;
+            result = 31 * result + Float.floatToIntBits(mDensity);
+            result = 31 * result + Float.floatToIntBits(mScaledDensity);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.calvin.demo;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import com.example.calvin.demo.layout.DocumentLayoutEngine;
+
+/**
+ * A drawable that draws a document the same way {@link DocumentView} does, with borders, a triangle decoration at the bottom
+ * right corner and the texts centered within. It draws through a {@link DocumentRenderer}, so it shares the measuring and
+ * drawing code of the view without being one, for example to show a document as a thumbnail in an image view or to draw
+ * many documents within a single view.
+ *
+ * The texts are laid out for the bounds, and laid out again when the bounds change. The intrinsic size is the size the texts
+ * take on a single line, including padding, like a {@link DocumentView} with wrap_content. Nothing is drawn offscreen unless
+ * the drawable is made translucent or given a color filter, which can't be applied to the shared paints of a style.
+ */
+public class DocumentDrawable extends Drawable {
+
+    //Draws the document
+    private final DocumentRenderer mRenderer;
+
+    //The paint used for compositing the offscreen layer, null unless the drawable is translucent or has a color filter
+    private Paint mLayerPaint;
+
+    //The intrinsic size, -1 if it has to be measured again
+    private int mIntrinsicWidth = -1;
+    private int mIntrinsicHeight = -1;
+
+    //Whether the texts have to be laid out for the bounds again before drawing
+    private boolean mLayoutRequested = true;
+
+    /**
+     * Create a drawable with the default style of {@link DocumentView}.
+     * @param context the context to take the display metrics from.
+     */
+    public DocumentDrawable(Context context) {
+        this(new DocumentStyle.Builder(context).build());
+    }
+
+    /**
+     * @param style the style to draw with.
+     */
+    public DocumentDrawable(DocumentStyle style) {
+        mRenderer = new DocumentRenderer(style);
+    }
+
+    /**
+     * Set the style to draw with.
+     * @param style the style, which is shared rather than copied.
+     */
+    public void setStyle(DocumentStyle style) {
+        if (style != mRenderer.getStyle()) {
+            mRenderer.setStyle(style);
+            onContentChanged();
+        }
+    }
+
+    /**
+     * @return the style the drawable draws with.
+     */
+    public DocumentStyle getStyle() {
+        return mRenderer.getStyle();
+    }
+
+    /**
+     * Set both title and subtitle. Hosts that size themselves after the intrinsic size, like an image view with
+     * wrap_content, have to be told to measure again.
+     * @param title the title, null for none. It must not be modified afterwards.
+     * @param subtitle the subtitle, null for none. It must not be modified afterwards.
+     */
+    public void setText(CharSequence title, CharSequence subtitle) {
+        mRenderer.setText(title, subtitle);
+        onContentChanged();
+    }
+
+    /**
+     * @return the title.
+     */
+    public CharSequence getTitle() {
+        return mRenderer.getTitle();
+    }
+
+    /**
+     * @return the subtitle.
+     */
+    public CharSequence getSubtitle() {
+        return mRenderer.getSubtitle();
+    }
+
+    /**
+     * Set the padding around the texts. The decoration size is used instead of the right and bottom padding if it is larger.
+     * @param left the left padding in pixel.
+     * @param top the top padding in pixel.
+     * @param right the right padding in pixel.
+     * @param bottom the bottom padding in pixel.
+     */
+    public void setPadding(int left, int top, int right, int bottom) {
+        mRenderer.setPadding(left, top, right, bottom);
+        onContentChanged();
+    }
+
+    /**
+     * Fill the document with a color, except for the bottom right corner.
+     * @param color the background color, 0 for no background.
+     */
+    public void setBackgroundColor(int color) {
+        mRenderer.setBackgroundColor(color);
+        invalidateSelf();
+    }
+
+    /**
+     * Set the line breaking quality of title and subtitle.
+     * @param layoutQuality one of the DocumentView.LAYOUT_QUALITY_* constants.
+     */
+    public void setLayoutQuality(int layoutQuality) {
+        mRenderer.setLayoutQuality(layoutQuality);
+        onContentChanged();
+    }
+
+    /**
+     * Measure and lay out again on the next occasion and redraw.
+     */
+    private void onContentChanged() {
+        mIntrinsicWidth = -1;
+        mIntrinsicHeight = -1;
+        mLayoutRequested = true;
+        invalidateSelf();
+    }
+
+    /**
+     * Measure the size the texts take on a single line, including padding.
+     */
+    private void measureIntrinsicSize() {
+        //Leave the texts all the room they want, so that the document takes its desired size.
+        int unspecified = DocumentLayoutEngine.makeMeasureSpec(0, DocumentLayoutEngine.MODE_UNSPECIFIED);
+        mRenderer.measure(unspecified, unspecified);
+        mIntrinsicWidth = mRenderer.getDesiredWidth();
+        mIntrinsicHeight = mRenderer.getDesiredHeight();
+        //Measuring has laid out the texts for the intrinsic size rather than the bounds.
+        mLayoutRequested = true;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        if (mIntrinsicWidth < 0) {
+            measureIntrinsicSize();
+        }
+        return mIntrinsicWidth;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        if (mIntrinsicHeight < 0) {
+            measureIntrinsicSize();
+        }
+        return mIntrinsicHeight;
+    }
+
+    /**
+     * Lay out the texts for the new bounds.
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        mLayoutRequested = true;
+    }
+
+    /**
+     * Draw the document within the bounds. The texts are laid out for the bounds first if anything has changed since the last
+     * draw, which only rebuilds the text layouts if the width available to them has changed.
+     * @param canvas the canvas to draw on.
+     */
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.isEmpty()) {
+            return;
+        }
+        if (mLayoutRequested) {
+            mRenderer.layout(bounds.width(), bounds.height());
+            mLayoutRequested = false;
+        }
+        int saveCount;
+        if (mLayerPaint != null) {
+            saveCount = canvas.saveLayer(bounds.left, bounds.top, bounds.right, bounds.bottom, mLayerPaint,
+                    Canvas.ALL_SAVE_FLAG);
+        }else {
+            saveCount = canvas.save();
+        }
+        canvas.translate(bounds.left, bounds.top);
+        mRenderer.draw(canvas);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Apply an alpha to the whole document. Anything but opaque draws through an offscreen layer.
+     * {@inheritDoc}
+     */
+    @Override
+    public void setAlpha(int alpha) {
+        if (alpha != getAlpha()) {
+            getLayerPaint().setAlpha(alpha);
+            releaseLayerPaintIfUnused();
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return mLayerPaint == null ? 255 : mLayerPaint.getAlpha();
+    }
+
+    /**
+     * Apply a color filter to the whole document, which draws through an offscreen layer then.
+     * {@inheritDoc}
+     */
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        if (colorFilter != null || mLayerPaint != null) {
+            getLayerPaint().setColorFilter(colorFilter);
+            releaseLayerPaintIfUnused();
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * The bottom right corner is always cut out, so the drawable is never opaque.
+     * {@inheritDoc}
+     */
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    /**
+     * @return the paint used for compositing the offscreen layer, created on first use.
+     */
+    private Paint getLayerPaint() {
+        if (mLayerPaint == null) {
+            mLayerPaint = new Paint();
+        }
+        return mLayerPaint;
+    }
+
+    /**
+     * Go back to drawing directly once the drawable is opaque and has no color filter.
+     */
+    private void releaseLayerPaintIfUnused() {
+        if (mLayerPaint.getAlpha() == 255 && mLayerPaint.getColorFilter() == null) {
+            mLayerPaint = null;
+        }
+    }
+}
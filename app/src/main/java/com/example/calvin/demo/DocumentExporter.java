@@ -0,0 +1,623 @@
+package com.example.calvin.demo;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.pdf.PdfDocument;
+import android.os.Build;
+import android.os.Process;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders documents without any view, to bitmaps, PNG files or a PDF document, on a pool of worker threads. Each document is
+ * laid out and drawn by a {@link DocumentRenderer} of its own with private copies of the paints of its style, so documents are
+ * rendered in parallel and never touch the UI thread.
+ *
+ * Results are streamed: the listener hears of each document as soon as it is done, on the worker thread that did it. Bitmaps
+ * and PNG files are produced in whatever order the documents finish. PDF pages have to be written one after another, so
+ * the documents are laid out in parallel and each page is drawn as soon as it and all pages before it are laid out.
+ *
+ * An export can be canceled through the returned {@link Export}. Call {@link #shutdown()} once the exporter is no longer
+ * needed if it created its own pool.
+ */
+public final class DocumentExporter {
+
+    /**
+     * The document to be exported. The values must not be changed once the document has been handed to an export.
+     */
+    public static final class Spec {
+
+        private final DocumentStyle mStyle;
+        private final CharSequence mTitle;
+        private final CharSequence mSubtitle;
+        private final int mWidth;
+        private final int mHeight;
+        private int mPaddingLeft;
+        private int mPaddingTop;
+        private int mPaddingRight;
+        private int mPaddingBottom;
+        private int mBackgroundColor;
+
+        /**
+         * @param style the style to draw with.
+         * @param title the title, null for none. It must not be modified afterwards.
+         * @param subtitle the subtitle, null for none. It must not be modified afterwards.
+         * @param width the width in pixel, or in PostScript points for PDF pages.
+         * @param height the height in pixel, or in PostScript points for PDF pages.
+         */
+        public Spec(DocumentStyle style, CharSequence title, CharSequence subtitle, int width, int height) {
+            mStyle = style;
+            mTitle = title;
+            mSubtitle = subtitle;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        /**
+         * Set the padding around the texts. The decoration size is used instead of the right and bottom padding if it is larger.
+         * @param left the left padding.
+         * @param top the top padding.
+         * @param right the right padding.
+         * @param bottom the bottom padding.
+         * @return this spec.
+         */
+        public Spec setPadding(int left, int top, int right, int bottom) {
+            mPaddingLeft = left;
+            mPaddingTop = top;
+            mPaddingRight = right;
+            mPaddingBottom = bottom;
+            return this;
+        }
+
+        /**
+         * Fill the document with a color, except for the bottom right corner, which stays transparent in bitmaps.
+         * @param color the background color, 0 for none.
+         * @return this spec.
+         */
+        public Spec setBackgroundColor(int color) {
+            mBackgroundColor = color;
+            return this;
+        }
+    }
+
+    /**
+     * Receives the results of an export. All methods are called on worker threads, but never concurrently.
+     */
+    public interface Listener {
+
+        /**
+         * A document has been exported.
+         * @param index the index of the document in the list of specs.
+         * @param bitmap the rendered bitmap, which is handed over to the listener, for bitmap exports. Null for PNG and PDF
+         *               exports.
+         */
+        void onDocumentExported(int index, Bitmap bitmap);
+
+        /**
+         * All documents have been exported. Not called if the export failed or has been canceled.
+         */
+        void onExportFinished();
+
+        /**
+         * Exporting a document failed and the rest of the export is canceled. Nothing else is reported afterwards.
+         * @param index the index of the document in the list of specs.
+         * @param e the cause of the failure, or an {@link ExecutionException} wrapping the error that stopped rendering the
+         *          document, such as an {@link OutOfMemoryError}.
+         */
+        void onExportFailed(int index, Exception e);
+    }
+
+    /**
+     * Opens the outputs of a PNG export.
+     */
+    public interface OutputFactory {
+
+        /**
+         * Open the output for a document. It is closed by the exporter. Called on a worker thread.
+         * @param index the index of the document in the list of specs.
+         * @return the output stream.
+         * @throws IOException if the output can't be opened.
+         */
+        OutputStream openOutput(int index) throws IOException;
+    }
+
+    /**
+     * A running export.
+     */
+    public static final class Export {
+
+        private final AtomicBoolean mCanceled = new AtomicBoolean();
+        private final List<Future<?>> mFutures;
+        private final Listener mListener;
+
+        //The number of documents whose tasks haven't finished, failed or been skipped yet
+        private final AtomicInteger mPendingTasks;
+
+        //Releases what the export holds once no task is pending anymore, null if there is nothing to release
+        private final Runnable mOnTasksDone;
+
+        private Export(int count, Listener listener, Runnable onTasksDone) {
+            mFutures = new ArrayList<>(count);
+            mListener = listener;
+            mPendingTasks = new AtomicInteger(count);
+            mOnTasksDone = onTasksDone;
+        }
+
+        /**
+         * Stop the export. Documents not yet started are left out, and nothing is reported to the listener afterwards.
+         */
+        public void cancel() {
+            if (mCanceled.compareAndSet(false, true)) {
+                synchronized (mFutures) {
+                    for (Future<?> future : mFutures) {
+                        future.cancel(false);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return whether the export has been canceled, or has failed.
+         */
+        public boolean isCanceled() {
+            return mCanceled.get();
+        }
+
+        /**
+         * Report a failure unless the export has been canceled or has failed already, and cancel the rest.
+         * @param index the index of the failed document.
+         * @param e the cause of the failure.
+         */
+        private void fail(int index, Exception e) {
+            if (mCanceled.compareAndSet(false, true)) {
+                synchronized (mListener) {
+                    mListener.onExportFailed(index, e);
+                }
+                synchronized (mFutures) {
+                    for (Future<?> future : mFutures) {
+                        future.cancel(false);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Count a task as done, whether it has finished, failed or been skipped, and release what the export holds after the
+         * last one.
+         */
+        private void onTaskDone() {
+            if (mPendingTasks.decrementAndGet() == 0 && mOnTasksDone != null) {
+                mOnTasksDone.run();
+            }
+        }
+    }
+
+    //The quality hint handed to the PNG encoder, which ignores it since PNG is lossless
+    private static final int PNG_QUALITY = 100;
+
+    //The pool the documents are rendered on
+    private final ExecutorService mExecutor;
+
+    //Whether the pool has been created by the exporter and is to be shut down by it
+    private final boolean mOwnsExecutor;
+
+    /**
+     * Create an exporter with a pool of its own.
+     * @param threadCount the number of worker threads, for example the number of processors.
+     */
+    public DocumentExporter(int threadCount) {
+        mExecutor = Executors.newFixedThreadPool(Math.max(threadCount, 1), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        //Stay out of the way of the UI thread.
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "DocumentExporter #" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mOwnsExecutor = true;
+    }
+
+    /**
+     * Create an exporter that renders on the given pool.
+     * @param executor the pool to render on. It is not shut down by the exporter.
+     */
+    public DocumentExporter(ExecutorService executor) {
+        mExecutor = executor;
+        mOwnsExecutor = false;
+    }
+
+    /**
+     * Stop the pool if it has been created by the exporter. Running exports are completed.
+     */
+    public void shutdown() {
+        if (mOwnsExecutor) {
+            mExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Render documents to bitmaps in parallel. Each bitmap is handed to the listener as soon as it is rendered.
+     * @param specs the documents.
+     * @param listener the listener to receive the bitmaps.
+     * @return the running export.
+     */
+    public Export exportBitmaps(final List<Spec> specs, final Listener listener) {
+        final Export export = new Export(specs.size(), listener, null);
+        final AtomicInteger remaining = new AtomicInteger(specs.size());
+        for (int i = 0; i < specs.size(); i++) {
+            final int index = i;
+            submit(export, index, new Runnable() {
+                @Override
+                public void run() {
+                    Spec spec = specs.get(index);
+                    Bitmap bitmap = Bitmap.createBitmap(spec.mWidth, spec.mHeight, Bitmap.Config.ARGB_8888);
+                    createRenderer(spec).draw(new Canvas(bitmap));
+                    onDocumentExported(export, index, bitmap, remaining);
+                }
+            });
+        }
+        finishIfEmpty(export, specs);
+        return export;
+    }
+
+    /**
+     * Render documents to PNG files in parallel. The bitmaps are reused for documents of the same size and let go once the
+     * export is done, so there are never more of them than documents being rendered at a time.
+     * @param specs the documents.
+     * @param outputFactory the factory opening an output for each document.
+     * @param listener the listener to be told about each exported document.
+     * @return the running export.
+     */
+    public Export exportPng(final List<Spec> specs, final OutputFactory outputFactory, final Listener listener) {
+        final BitmapPool bitmapPool = new BitmapPool();
+        final Export export = new Export(specs.size(), listener, new Runnable() {
+            @Override
+            public void run() {
+                //Full-size bitmaps are large, so don't keep any of them once the export is done.
+                bitmapPool.clear();
+            }
+        });
+        final AtomicInteger remaining = new AtomicInteger(specs.size());
+        for (int i = 0; i < specs.size(); i++) {
+            final int index = i;
+            submit(export, index, new Runnable() {
+                @Override
+                public void run() {
+                    Spec spec = specs.get(index);
+                    Bitmap bitmap = bitmapPool.obtain(spec.mWidth, spec.mHeight);
+                    try {
+                        createRenderer(spec).draw(new Canvas(bitmap));
+                        OutputStream output = outputFactory.openOutput(index);
+                        try {
+                            if (!bitmap.compress(Bitmap.CompressFormat.PNG, PNG_QUALITY, output)) {
+                                throw new IOException("Encoding document " + index + " as PNG failed");
+                            }
+                        }finally {
+                            output.close();
+                        }
+                    }catch (IOException e) {
+                        export.fail(index, e);
+                        return;
+                    }finally {
+                        bitmapPool.recycle(bitmap);
+                    }
+                    onDocumentExported(export, index, null, remaining);
+                }
+            });
+        }
+        finishIfEmpty(export, specs);
+        return export;
+    }
+
+    /**
+     * Render documents as the pages of a PDF document, one page per document in the order of the specs. The documents are laid
+     * out in parallel while the pages are drawn one after another, and the PDF document is written to the output once all
+     * pages are drawn. The sizes of the specs are taken as PostScript points. Requires KitKat, where {@link PdfDocument} was
+     * added.
+     * @param specs the documents.
+     * @param output the output to write the PDF document to. It is closed by the exporter.
+     * @param listener the listener to be told about each drawn page.
+     * @return the running export.
+     * @throws UnsupportedOperationException if the platform is older than KitKat.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public Export exportPdf(final List<Spec> specs, final OutputStream output, final Listener listener) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            throw new UnsupportedOperationException("Exporting PDF documents requires KitKat");
+        }
+        final PdfWriter writer = new PdfWriter(specs, output);
+        final Export export = new Export(specs.size(), listener, new Runnable() {
+            @Override
+            public void run() {
+                //Nothing is drawn anymore, so let go of the document unless it has been written.
+                writer.close();
+            }
+        });
+        writer.mExport = export;
+        for (int i = 0; i < specs.size(); i++) {
+            final int index = i;
+            submit(export, index, new Runnable() {
+                @Override
+                public void run() {
+                    writer.onLaidOut(index, createRenderer(specs.get(index)));
+                }
+            });
+        }
+        if (specs.isEmpty()) {
+            writer.finish();
+        }
+        return export;
+    }
+
+    /**
+     * Submit the task of a document to the pool, failing the export if the pool rejects it or the task throws, errors
+     * included. The task is counted as done once it has run, or as soon as it is skipped or canceled.
+     * @param export the export the document belongs to.
+     * @param index the index of the document.
+     * @param task the task rendering the document.
+     */
+    private void submit(final Export export, final int index, final Runnable task) {
+        if (export.isCanceled()) {
+            export.onTaskDone();
+            return;
+        }
+        FutureTask<Void> future = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                if (export.isCanceled()) {
+                    return;
+                }
+                try {
+                    task.run();
+                }catch (RuntimeException e) {
+                    export.fail(index, e);
+                }catch (Error e) {
+                    //Most likely out of memory for a bitmap. The future would swallow it and leave the export hanging.
+                    export.fail(index, new ExecutionException(e));
+                }
+            }
+        }, null) {
+            @Override
+            protected void done() {
+                export.onTaskDone();
+            }
+        };
+        synchronized (export.mFutures) {
+            export.mFutures.add(future);
+        }
+        try {
+            mExecutor.execute(future);
+        }catch (RejectedExecutionException e) {
+            export.fail(index, e);
+            //Never run, so count it as done.
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Report an exported document, and the end of the export if it was the last one.
+     * @param export the export.
+     * @param index the index of the document.
+     * @param bitmap the bitmap for bitmap exports, null otherwise.
+     * @param remaining the number of documents not exported yet.
+     */
+    private static void onDocumentExported(Export export, int index, Bitmap bitmap, AtomicInteger remaining) {
+        synchronized (export.mListener) {
+            if (export.isCanceled()) {
+                return;
+            }
+            export.mListener.onDocumentExported(index, bitmap);
+            if (remaining.decrementAndGet() == 0) {
+                export.mListener.onExportFinished();
+            }
+        }
+    }
+
+    /**
+     * Report the end of an export without documents right away.
+     * @param export the export.
+     * @param specs the documents.
+     */
+    private static void finishIfEmpty(Export export, List<Spec> specs) {
+        if (specs.isEmpty()) {
+            export.mListener.onExportFinished();
+        }
+    }
+
+    /**
+     * Create a renderer for a document with private paints, laid out for the size of the document.
+     * @param spec the document.
+     * @return the renderer, ready to draw.
+     */
+    private static DocumentRenderer createRenderer(Spec spec) {
+        DocumentStyle style = spec.mStyle;
+        DocumentRenderer renderer = new DocumentRenderer();
+        renderer.setPaints(style.createBorderPaint(), style.createDecorPaint(), style.createTitlePaint(),
+                style.createSubtitlePaint(), style.getDecorSize());
+        renderer.setText(spec.mTitle, spec.mSubtitle);
+        renderer.setPadding(spec.mPaddingLeft, spec.mPaddingTop, spec.mPaddingRight, spec.mPaddingBottom);
+        renderer.setBackgroundColor(spec.mBackgroundColor);
+        renderer.layout(spec.mWidth, spec.mHeight);
+        return renderer;
+    }
+
+    /**
+     * The bitmaps of a PNG export that aren't being rendered into, reused for documents of the same size.
+     */
+    private static final class BitmapPool {
+
+        private final ArrayList<Bitmap> mBitmaps = new ArrayList<>();
+
+        /**
+         * Take a bitmap of the given size out of the pool and clear it, or create one if there is none.
+         * @param width the width of the bitmap.
+         * @param height the height of the bitmap.
+         * @return the bitmap.
+         */
+        private Bitmap obtain(int width, int height) {
+            synchronized (mBitmaps) {
+                for (int i = mBitmaps.size() - 1; i >= 0; i--) {
+                    Bitmap bitmap = mBitmaps.get(i);
+                    if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                        mBitmaps.remove(i);
+                        bitmap.eraseColor(0);
+                        return bitmap;
+                    }
+                }
+                //The bitmaps of other sizes would only be replaced by ones of this size anyway.
+                mBitmaps.clear();
+            }
+            return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+
+        /**
+         * Put a bitmap that is no longer rendered into back into the pool.
+         * @param bitmap the bitmap.
+         */
+        private void recycle(Bitmap bitmap) {
+            synchronized (mBitmaps) {
+                mBitmaps.add(bitmap);
+            }
+        }
+
+        /**
+         * Let go of all bitmaps in the pool.
+         */
+        private void clear() {
+            synchronized (mBitmaps) {
+                mBitmaps.clear();
+            }
+        }
+    }
+
+    /**
+     * Draws laid out documents as PDF pages in the order of the specs, whichever worker thread lays them out.
+     */
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static final class PdfWriter {
+
+        private final List<Spec> mSpecs;
+        private final OutputStream mOutput;
+        private final PdfDocument mDocument = new PdfDocument();
+
+        //The export the pages belong to, set right after it has been created
+        private Export mExport;
+
+        //Whether the document and the output have been closed
+        private boolean mClosed;
+
+        //The laid out documents waiting for the pages before them, by index
+        private final DocumentRenderer[] mRenderers;
+
+        //The index of the next page to be drawn
+        private int mNextPage;
+
+        private PdfWriter(List<Spec> specs, OutputStream output) {
+            mSpecs = specs;
+            mOutput = output;
+            mRenderers = new DocumentRenderer[specs.size()];
+        }
+
+        /**
+         * Take a laid out document, and draw it and all following documents that are laid out as pages, as long as no page
+         * before them is missing.
+         * @param index the index of the document.
+         * @param renderer the renderer of the document.
+         */
+        private synchronized void onLaidOut(int index, DocumentRenderer renderer) {
+            if (mClosed) {
+                return;
+            }
+            mRenderers[index] = renderer;
+            while (mNextPage < mRenderers.length && mRenderers[mNextPage] != null && !mExport.isCanceled()) {
+                int page = mNextPage;
+                Spec spec = mSpecs.get(page);
+                PdfDocument.Page pdfPage = mDocument.startPage(
+                        new PdfDocument.PageInfo.Builder(spec.mWidth, spec.mHeight, page + 1).create());
+                mRenderers[page].draw(pdfPage.getCanvas());
+                mDocument.finishPage(pdfPage);
+                //Let go of the layouts as soon as the page is drawn.
+                mRenderers[page] = null;
+                mNextPage++;
+                onPageDrawn(page);
+            }
+            if (!mExport.isCanceled() && mNextPage == mRenderers.length) {
+                finish();
+            }
+        }
+
+        /**
+         * Report a drawn page.
+         * @param page the index of the page.
+         */
+        private void onPageDrawn(int page) {
+            synchronized (mExport.mListener) {
+                if (!mExport.isCanceled()) {
+                    mExport.mListener.onDocumentExported(page, null);
+                }
+            }
+        }
+
+        /**
+         * Write the document once all pages are drawn.
+         */
+        private synchronized void finish() {
+            mClosed = true;
+            try {
+                try {
+                    mDocument.writeTo(mOutput);
+                }finally {
+                    mDocument.close();
+                    mOutput.close();
+                }
+            }catch (IOException e) {
+                mExport.fail(mRenderers.length - 1, e);
+                return;
+            }
+            synchronized (mExport.mListener) {
+                if (!mExport.isCanceled()) {
+                    mExport.mListener.onExportFinished();
+                }
+            }
+        }
+
+        /**
+         * Close the document and the output without writing anything, unless that has been done already. Called once every
+         * task of a canceled or failed export is done.
+         */
+        private synchronized void close() {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            mDocument.close();
+            try {
+                mOutput.close();
+            }catch (IOException e) {
+                //The export has been canceled or has failed already, so there is no one left to tell.
+            }
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package com.example.calvin.demo;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.Nullable;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * A single view that draws any number of documents in a grid of equally sized cells, with the same look as
+ * {@link DocumentView}. The documents come from an {@link Adapter} and are drawn by {@link DocumentRenderer}s rather than views,
+ * so there is no view per document, no layer per document and no per document paints unless the adapter sets its own styles.
+ *
+ * Only the documents around the visible part of the grid are bound to a renderer, so the text layouts kept in memory and the
+ * work done per frame depend on the size of the screen rather than the number of documents. Renderers of documents that move
+ * out of view drop their layouts and are reused for the documents that come into view.
+ *
+ * The grid is as tall as all of its rows and is meant to be scrolled by a parent such as a {@link android.widget.ScrollView}.
+ * It follows the scrolling the same way {@link DocumentView#setClipToViewport(boolean)} does, so a hardware accelerated grid
+ * only records the documents around the visible part and is redrawn once scrolling gets past them. While none of it is
+ * visible, no documents are recorded, and the grid is redrawn before the first frame that shows any of it.
+ */
+public class DocumentGridView extends View {
+
+    //Default number of columns
+    private static final int DEFAULT_COLUMN_COUNT = 2;
+
+    //Default height of a cell in dip
+    private static final int DEFAULT_ITEM_HEIGHT_IN_DIP = 120;
+
+    //Default space between cells in dip
+    private static final int DEFAULT_ITEM_SPACING_IN_DIP = 8;
+
+    //Default padding within a cell in dip
+    private static final int DEFAULT_ITEM_PADDING_IN_DIP = 8;
+
+    //The adapter providing the documents, null if there is none
+    private Adapter mAdapter;
+
+    //The number of columns
+    private int mColumnCount = DEFAULT_COLUMN_COUNT;
+
+    //The height of a cell
+    private int mItemHeight;
+
+    //The space between cells, both horizontally and vertically
+    private int mItemSpacing;
+
+    //The padding within a cell, around the texts of a document
+    private int mItemPadding;
+
+    //The style a renderer is reset to before it is bound, so that documents the adapter doesn't style look like DocumentView
+    private DocumentStyle mDefaultStyle;
+
+    //The renderers bound to a document, by position
+    private final SparseArray<DocumentRenderer> mActiveRenderers = new SparseArray<>();
+
+    //The renderers not bound to any document, ready to be reused
+    private final ArrayList<DocumentRenderer> mScrapRenderers = new ArrayList<>();
+
+    //Tracks the visible part of the grid while it is attached
+    private ViewportTracker mViewportTracker;
+
+    //The area to be drawn, reused on every draw
+    private final Rect mDrawRect = new Rect();
+
+    /**
+     * {@inheritDoc}
+     */
+    public DocumentGridView(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DocumentGridView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public DocumentGridView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        initialize(context, attrs, defStyleAttr, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public DocumentGridView(Context context, @Nullable AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr, defStyleRes);
+        initialize(context, attrs, defStyleAttr, defStyleRes);
+    }
+
+    /**
+     * Initialize the grid attributes from the resource and the default style of the documents.
+     * @param context The Context the view is running in, through which it can
+     *        access the current theme, resources, etc.
+     * @param attrs The attributes of the XML tag that is inflating the view.
+     * @param defStyleAttr An attribute in the current theme that contains a
+     *        reference to a style resource that supplies default values for
+     *        the view. Can be 0 to not look for defaults.
+     * @param defStyleRes A resource identifier of a style resource that
+     *        supplies default values for the view, used only if
+     *        defStyleAttr is 0 or can not be found in the theme. Can be 0
+     *        to not look for defaults.
+     */
+    private void initialize(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        float density = getResources().getDisplayMetrics().density;
+        int defaultItemHeight = (int) (DEFAULT_ITEM_HEIGHT_IN_DIP * density + 0.5f);
+        int defaultItemSpacing = (int) (DEFAULT_ITEM_SPACING_IN_DIP * density + 0.5f);
+        int defaultItemPadding = (int) (DEFAULT_ITEM_PADDING_IN_DIP * density + 0.5f);
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.DocumentGridView, defStyleAttr, defStyleRes);
+        try {
+            mColumnCount = Math.max(a.getInt(R.styleable.DocumentGridView_columnCount, DEFAULT_COLUMN_COUNT), 1);
+            mItemHeight = a.getDimensionPixelSize(R.styleable.DocumentGridView_itemHeight, defaultItemHeight);
+            mItemSpacing = a.getDimensionPixelSize(R.styleable.DocumentGridView_itemSpacing, defaultItemSpacing);
+            mItemPadding = a.getDimensionPixelSize(R.styleable.DocumentGridView_itemPadding, defaultItemPadding);
+        }finally {
+            a.recycle();
+        }
+        mDefaultStyle = DocumentAttributeCache.getDefaults(getResources().getDisplayMetrics());
+        mViewportTracker = new ViewportTracker(this, false);
+    }
+
+    /**
+     * Set the adapter providing the documents. The documents of the previous adapter are released.
+     * @param adapter the adapter, null to show nothing.
+     */
+    public void setAdapter(Adapter adapter) {
+        if (mAdapter == adapter) {
+            return;
+        }
+        if (mAdapter != null) {
+            mAdapter.mGridView = null;
+        }
+        mAdapter = adapter;
+        if (adapter != null) {
+            adapter.mGridView = this;
+        }
+        onDataSetChanged();
+    }
+
+    /**
+     * @return the adapter providing the documents, null if there is none.
+     */
+    public Adapter getAdapter() {
+        return mAdapter;
+    }
+
+    /**
+     * Set the number of columns.
+     * @param columnCount the number of columns, at least 1.
+     */
+    public void setColumnCount(int columnCount) {
+        columnCount = Math.max(columnCount, 1);
+        if (mColumnCount != columnCount) {
+            mColumnCount = columnCount;
+            releaseAllRenderers();
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the number of columns.
+     */
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    /**
+     * Set the height of a cell.
+     * @param itemHeight the height in pixel.
+     */
+    public void setItemHeight(int itemHeight) {
+        if (mItemHeight != itemHeight) {
+            mItemHeight = itemHeight;
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the height of a cell in pixel.
+     */
+    public int getItemHeight() {
+        return mItemHeight;
+    }
+
+    /**
+     * Set the space between cells, both horizontally and vertically.
+     * @param itemSpacing the space in pixel.
+     */
+    public void setItemSpacing(int itemSpacing) {
+        if (mItemSpacing != itemSpacing) {
+            mItemSpacing = itemSpacing;
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the space between cells in pixel.
+     */
+    public int getItemSpacing() {
+        return mItemSpacing;
+    }
+
+    /**
+     * Set the padding within a cell around the texts of a document. The decoration size is used instead of the right and
+     * bottom padding if it is larger.
+     * @param itemPadding the padding in pixel.
+     */
+    public void setItemPadding(int itemPadding) {
+        if (mItemPadding != itemPadding) {
+            mItemPadding = itemPadding;
+            releaseAllRenderers();
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the padding within a cell in pixel.
+     */
+    public int getItemPadding() {
+        return mItemPadding;
+    }
+
+    /**
+     * Find the document at a point, for example to handle a click.
+     * @param x the horizontal position in the grid's own coordinates.
+     * @param y the vertical position in the grid's own coordinates.
+     * @return the position of the document, -1 if there is none at the point.
+     */
+    public int pointToPosition(int x, int y) {
+        int count = getItemCount();
+        int columnWidth = getColumnWidth();
+        if (count == 0 || columnWidth <= 0 || mItemHeight <= 0) {
+            return -1;
+        }
+        int left = x - getPaddingLeft();
+        int top = y - getPaddingTop();
+        if (left < 0 || top < 0) {
+            return -1;
+        }
+        int column = left / (columnWidth + mItemSpacing);
+        int row = top / (mItemHeight + mItemSpacing);
+        //Points in the spacing between cells don't belong to any document.
+        if (column >= mColumnCount || left % (columnWidth + mItemSpacing) >= columnWidth
+                || top % (mItemHeight + mItemSpacing) >= mItemHeight) {
+            return -1;
+        }
+        int position = row * mColumnCount + column;
+        return position < count ? position : -1;
+    }
+
+    /**
+     * Take up the full width available and the height of all rows.
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec);
+        int rowCount = getRowCount();
+        int desiredHeight = getPaddingTop() + getPaddingBottom();
+        if (rowCount > 0) {
+            desiredHeight += rowCount * mItemHeight + (rowCount - 1) * mItemSpacing;
+        }
+        setMeasuredDimension(width, resolveSize(Math.max(desiredHeight, getSuggestedMinimumHeight()), heightMeasureSpec));
+    }
+
+    /**
+     * Release the renderers, since the cells have a different size now.
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (w != oldw) {
+            releaseAllRenderers();
+        }
+    }
+
+    /**
+     * Draw the documents in the area to be drawn. On a hardware accelerated canvas that is the visible part of the grid and
+     * some margin around it, on a software canvas it is the area the canvas is clipped to. Renderers are bound to the documents
+     * in that area and released from all others before drawing.
+     * @param canvas the canvas on which the background will be drawn.
+     */
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int count = getItemCount();
+        int columnWidth = getColumnWidth();
+        if (count == 0 || columnWidth <= 0 || mItemHeight <= 0) {
+            releaseAllRenderers();
+            return;
+        }
+        if (!canvas.isHardwareAccelerated() || !mViewportTracker.getDrawRect(mDrawRect)) {
+            if (!canvas.getClipBounds(mDrawRect)) {
+                releaseAllRenderers();
+                return;
+            }
+        }
+        int paddingTop = getPaddingTop();
+        int rowHeight = mItemHeight + mItemSpacing;
+        int firstRow = Math.max((mDrawRect.top - paddingTop) / rowHeight, 0);
+        int lastRow = Math.min((mDrawRect.bottom - paddingTop) / rowHeight, getRowCount() - 1);
+        if (mDrawRect.isEmpty() || lastRow < firstRow) {
+            releaseAllRenderers();
+            return;
+        }
+        int first = firstRow * mColumnCount;
+        int last = Math.min((lastRow + 1) * mColumnCount, count) - 1;
+        bindRenderers(first, last, columnWidth);
+
+        int paddingLeft = getPaddingLeft();
+        for (int position = first; position <= last; position++) {
+            DocumentRenderer renderer = mActiveRenderers.get(position);
+            int left = paddingLeft + position % mColumnCount * (columnWidth + mItemSpacing);
+            int top = paddingTop + position / mColumnCount * rowHeight;
+            int saveCount = canvas.save();
+            canvas.translate(left, top);
+            renderer.draw(canvas);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    /**
+     * Make sure exactly the documents in a range of positions are bound to a renderer and laid out for the cell size.
+     * @param first the first position of the range.
+     * @param last the last position of the range.
+     * @param columnWidth the width of a cell.
+     */
+    private void bindRenderers(int first, int last, int columnWidth) {
+        for (int i = mActiveRenderers.size() - 1; i >= 0; i--) {
+            int position = mActiveRenderers.keyAt(i);
+            if (position < first || position > last) {
+                releaseRenderer(mActiveRenderers.valueAt(i));
+                mActiveRenderers.removeAt(i);
+            }
+        }
+        for (int position = first; position <= last; position++) {
+            DocumentRenderer renderer = mActiveRenderers.get(position);
+            if (renderer == null) {
+                int scrapCount = mScrapRenderers.size();
+                renderer = scrapCount > 0 ? mScrapRenderers.remove(scrapCount - 1) : new DocumentRenderer(mDefaultStyle);
+                renderer.setStyle(mDefaultStyle);
+                renderer.setBackgroundColor(0);
+                renderer.setPadding(mItemPadding, mItemPadding, mItemPadding, mItemPadding);
+                mAdapter.onBindDocument(renderer, position);
+                mActiveRenderers.put(position, renderer);
+            }
+            //The layouts are only rebuilt if the cell size or the document has changed.
+            renderer.layout(columnWidth, mItemHeight);
+        }
+        //Keep no more spare renderers than documents are shown, the rest were only needed for a larger area.
+        while (mScrapRenderers.size() > mActiveRenderers.size()) {
+            mScrapRenderers.remove(mScrapRenderers.size() - 1);
+        }
+    }
+
+    /**
+     * Drop the layouts of a renderer and keep it for reuse.
+     * @param renderer the renderer no longer bound to a document.
+     */
+    private void releaseRenderer(DocumentRenderer renderer) {
+        renderer.recycle();
+        mScrapRenderers.add(renderer);
+    }
+
+    /**
+     * Release the renderers of all documents, so that they are bound again when drawn next.
+     */
+    private void releaseAllRenderers() {
+        for (int i = 0, size = mActiveRenderers.size(); i < size; i++) {
+            releaseRenderer(mActiveRenderers.valueAt(i));
+        }
+        mActiveRenderers.clear();
+    }
+
+    /**
+     * Rebind all documents after the adapter has changed.
+     */
+    private void onDataSetChanged() {
+        releaseAllRenderers();
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Rebind a single document after it has changed in the adapter, and redraw its cell.
+     * @param position the position of the document.
+     */
+    private void onItemChanged(int position) {
+        DocumentRenderer renderer = mActiveRenderers.get(position);
+        if (renderer == null) {
+            return;
+        }
+        releaseRenderer(renderer);
+        mActiveRenderers.remove(position);
+        int columnWidth = getColumnWidth();
+        int left = getPaddingLeft() + position % mColumnCount * (columnWidth + mItemSpacing);
+        int top = getPaddingTop() + position / mColumnCount * (mItemHeight + mItemSpacing);
+        invalidate(left, top, left + columnWidth, top + mItemHeight);
+    }
+
+    /**
+     * @return the number of documents.
+     */
+    private int getItemCount() {
+        return mAdapter == null ? 0 : mAdapter.getCount();
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    private int getRowCount() {
+        return (getItemCount() + mColumnCount - 1) / mColumnCount;
+    }
+
+    /**
+     * @return the width of a cell, which splits the content width evenly among the columns.
+     */
+    private int getColumnWidth() {
+        int contentWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        return (contentWidth - (mColumnCount - 1) * mItemSpacing) / mColumnCount;
+    }
+
+    /**
+     * Follow the scrolling of the parents.
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mViewportTracker.attach();
+    }
+
+    /**
+     * Stop following the scrolling and drop all layouts while the grid isn't shown.
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mViewportTracker.detach();
+        releaseAllRenderers();
+        mScrapRenderers.clear();
+    }
+
+    /**
+     * Provides the documents of a {@link DocumentGridView}. An adapter can be set on one grid at a time.
+     */
+    public static abstract class Adapter {
+
+        //The grid the adapter is set on, null if there is none
+        private DocumentGridView mGridView;
+
+        /**
+         * @return the number of documents.
+         */
+        public abstract int getCount();
+
+        /**
+         * Set up a renderer to draw the document at a position, at least by setting its texts through
+         * {@link DocumentRenderer#setText(CharSequence, CharSequence)}. The renderer comes with the default style, the padding of
+         * the grid and no background, which can be changed here as well. Styles should be shared among documents that look
+         * the same, so that they share their paints.
+         * @param renderer the renderer to set up.
+         * @param position the position of the document.
+         */
+        public abstract void onBindDocument(DocumentRenderer renderer, int position);
+
+        /**
+         * Notify the grid that documents have been added, removed or changed.
+         */
+        public void notifyDataSetChanged() {
+            if (mGridView != null) {
+                mGridView.onDataSetChanged();
+            }
+        }
+
+        /**
+         * Notify the grid that a single document has changed.
+         * @param position the position of the document.
+         */
+        public void notifyItemChanged(int position) {
+            if (mGridView != null) {
+                mGridView.onItemChanged(position);
+            }
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.example.calvin.demo;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Process;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import com.example.calvin.demo.layout.DocumentLayoutEngine;
+import com.example.calvin.demo.layout.TextMeasurer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the text layouts of documents that are about to be shown, in parallel on a bounded pool, so that a
+ * {@link DocumentView} finds them ready when it is measured instead of building them in {@link DocumentView#onMeasure(int, int)}.
+ * Typically a list hands the documents just beyond the visible ones to {@link #prefetch(DocumentStyle, CharSequence,
+ * CharSequence, int)} while scrolling, and cancels them through the returned future once they scroll away again.
+ *
+ * A view picks up a prefetched document if it has been given the prefetcher through
+ * {@link DocumentView#setLayoutPrefetcher(DocumentLayoutPrefetcher)}, looks exactly like the style of the document, shows the
+ * same texts and is measured at the prefetched width. The padding, line breaking quality and line limits of the prefetcher
+ * have to match those of the view, otherwise the layouts are built again at measure time as usual. Each prefetched document
+ * is handed to one view only and then forgotten.
+ *
+ * The layouts are built with private copies of the paints of the style, so nothing is shared with the UI thread until the
+ * view takes them over. The pool is a work-stealing {@link ForkJoinPool} since Lollipop and a fixed size thread pool before.
+ * Must only be used on the UI thread, except for the returned futures.
+ */
+public final class DocumentLayoutPrefetcher {
+
+    //How long idle threads of the pool used before Lollipop are kept around
+    private static final long KEEP_ALIVE_SECONDS = 1;
+
+    //The pool the layouts are built on
+    private final ExecutorService mExecutor;
+
+    //Whether the pool has been created by the prefetcher and is to be shut down by it
+    private final boolean mOwnsExecutor;
+
+    //The prefetched documents that haven't been taken by a view yet, finished or not
+    private final ConcurrentHashMap<Key, PrefetchTask> mTasks = new ConcurrentHashMap<>();
+
+    //The key reused for looking up documents at measure time
+    private final Key mLookupKey = new Key();
+
+    //The padding around the texts
+    private int mPaddingLeft;
+    private int mPaddingTop;
+    private int mPaddingRight;
+    private int mPaddingBottom;
+
+    //The line breaking quality, one of the DocumentView.LAYOUT_QUALITY_* constants
+    private int mLayoutQuality = DocumentView.LAYOUT_QUALITY_FAST;
+
+    //The maximum numbers of lines, Integer.MAX_VALUE if unlimited
+    private int mMaxTitleLines = Integer.MAX_VALUE;
+    private int mMaxSubtitleLines = Integer.MAX_VALUE;
+
+    //Where the texts are ellipsized if they have more lines than allowed, null to cut them off
+    private TextUtils.TruncateAt mEllipsize;
+
+    /**
+     * Create a prefetcher with a pool of its own.
+     * @param parallelism the number of worker threads, for example the number of processors minus one for the UI thread.
+     */
+    public DocumentLayoutPrefetcher(int parallelism) {
+        mExecutor = createPool(Math.max(parallelism, 1));
+        mOwnsExecutor = true;
+    }
+
+    /**
+     * Create a prefetcher that builds the layouts on the given pool.
+     * @param executor the pool to build on. It is not shut down by the prefetcher.
+     */
+    public DocumentLayoutPrefetcher(ExecutorService executor) {
+        mExecutor = executor;
+        mOwnsExecutor = false;
+    }
+
+    /**
+     * Create the pool for the given number of threads, a work-stealing one if the platform has it.
+     * @param parallelism the number of threads.
+     * @return the new pool.
+     */
+    private static ExecutorService createPool(int parallelism) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return createForkJoinPool(parallelism);
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        //Stay out of the way of the UI thread.
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "DocumentLayoutPrefetcher #" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Create a work-stealing pool that runs the prefetches in the order they are submitted.
+     * @param parallelism the number of threads.
+     * @return the new pool.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static ExecutorService createForkJoinPool(int parallelism) {
+        return new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = new BackgroundWorkerThread(pool);
+                thread.setName("DocumentLayoutPrefetcher #" + mCount.incrementAndGet());
+                return thread;
+            }
+        }, null, true);
+    }
+
+    /**
+     * A worker thread of the work-stealing pool that stays out of the way of the UI thread, like the threads of the pool used
+     * before Lollipop.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private static final class BackgroundWorkerThread extends ForkJoinWorkerThread {
+
+        private BackgroundWorkerThread(ForkJoinPool pool) {
+            super(pool);
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        }
+    }
+
+    /**
+     * Stop the pool if it has been created by the prefetcher, after canceling all prefetches.
+     */
+    public void shutdown() {
+        cancelAll();
+        if (mOwnsExecutor) {
+            mExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Set the padding around the texts of the documents prefetched from now on, which has to match that of the views.
+     * @param left the left padding in pixel.
+     * @param top the top padding in pixel.
+     * @param right the right padding in pixel.
+     * @param bottom the bottom padding in pixel.
+     */
+    public void setPadding(int left, int top, int right, int bottom) {
+        mPaddingLeft = left;
+        mPaddingTop = top;
+        mPaddingRight = right;
+        mPaddingBottom = bottom;
+    }
+
+    /**
+     * Set the line breaking quality of the documents prefetched from now on, which has to match that of the views.
+     * @param layoutQuality one of the DocumentView.LAYOUT_QUALITY_* constants.
+     */
+    public void setLayoutQuality(int layoutQuality) {
+        mLayoutQuality = layoutQuality;
+    }
+
+    /**
+     * Limit the numbers of lines of the documents prefetched from now on, which have to match those of the views.
+     * @param maxTitleLines the maximum number of title lines, Integer.MAX_VALUE if unlimited.
+     * @param maxSubtitleLines the maximum number of subtitle lines, Integer.MAX_VALUE if unlimited.
+     * @param ellipsize where the texts are ellipsized if they have more lines, or null to cut them off.
+     */
+    public void setMaxLines(int maxTitleLines, int maxSubtitleLines, TextUtils.TruncateAt ellipsize) {
+        mMaxTitleLines = maxTitleLines;
+        mMaxSubtitleLines = maxSubtitleLines;
+        mEllipsize = ellipsize;
+    }
+
+    /**
+     * Start building the text layouts of a document that is about to be shown. A document that is already being prefetched
+     * isn't prefetched again.
+     * @param style the style of the view the document will be shown in.
+     * @param title the title, null for none. It must not be modified afterwards.
+     * @param subtitle the subtitle, null for none. It must not be modified afterwards.
+     * @param width the width the view will be measured at, as in an exact width measure spec.
+     * @return the future of the prefetch. Canceling it drops the document, for example once it scrolls away.
+     */
+    public Future<?> prefetch(DocumentStyle style, CharSequence title, CharSequence subtitle, int width) {
+        Key key = new Key();
+        key.set(style, title == null ? "" : title, subtitle == null ? "" : subtitle, width);
+        PrefetchTask task = mTasks.get(key);
+        if (task != null) {
+            return task;
+        }
+        task = new PrefetchTask(key, new LayoutJob(this, key));
+        mTasks.put(key, task);
+        try {
+            mExecutor.execute(task);
+        }catch (RejectedExecutionException e) {
+            //The view lays the texts out itself then.
+            task.cancel(false);
+        }
+        return task;
+    }
+
+    /**
+     * Cancel all prefetches and drop all prefetched documents.
+     */
+    public void cancelAll() {
+        for (PrefetchTask task : mTasks.values()) {
+            task.cancel(false);
+        }
+        mTasks.clear();
+    }
+
+    /**
+     * @return the number of documents prefetched or being prefetched that haven't been taken by a view yet.
+     */
+    public int getPendingCount() {
+        return mTasks.size();
+    }
+
+    /**
+     * Hand the layouts of a prefetched document over to the layout caches of a view about to be measured. A document that is
+     * still being prefetched is canceled instead, since the view won't wait for it.
+     * @param style the style of the view.
+     * @param title the title of the view.
+     * @param subtitle the subtitle of the view.
+     * @param width the width the view is measured at.
+     * @param titleCache the title layout cache of the view.
+     * @param titlePaint the title paint of the view.
+     * @param subtitleCache the subtitle layout cache of the view.
+     * @param subtitlePaint the subtitle paint of the view.
+     * @return true if prefetched layouts have been taken over.
+     */
+    boolean take(DocumentStyle style, CharSequence title, CharSequence subtitle, int width, TextLayoutCache titleCache,
+                 TextPaint titlePaint, TextLayoutCache subtitleCache, TextPaint subtitlePaint) {
+        if (mTasks.isEmpty()) {
+            return false;
+        }
+        mLookupKey.set(style, title, subtitle, width);
+        PrefetchTask task = mTasks.remove(mLookupKey);
+        if (task == null) {
+            return false;
+        }
+        if (!task.isDone()) {
+            task.cancel(false);
+            return false;
+        }
+        if (task.isCancelled()) {
+            return false;
+        }
+        LayoutJob job = task.mJob;
+        boolean adopted = titleCache.adopt(job.mTitleLayoutCache, titlePaint);
+        return subtitleCache.adopt(job.mSubtitleLayoutCache, subtitlePaint) || adopted;
+    }
+
+    /**
+     * A prefetch that forgets its document once it is canceled, even if it has finished already.
+     */
+    private final class PrefetchTask extends FutureTask<Void> {
+
+        private final Key mKey;
+        private final LayoutJob mJob;
+
+        private PrefetchTask(Key key, LayoutJob job) {
+            super(job, null);
+            mKey = key;
+            mJob = job;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            //A finished prefetch can't be canceled any more, but its document is dropped all the same.
+            mTasks.remove(mKey, this);
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    /**
+     * Measures and lays out title and subtitle of a document on a worker thread the same way {@link DocumentView} does when it
+     * is measured at an exact width.
+     */
+    private static final class LayoutJob implements Runnable, TextMeasurer {
+
+        private final CharSequence mTitle;
+        private final CharSequence mSubtitle;
+        private final TextPaint mTitlePaint;
+        private final TextPaint mSubtitlePaint;
+        private final int mWidth;
+        private final DocumentLayoutEngine mLayoutEngine = new DocumentLayoutEngine();
+        private final TextLayoutCache mTitleLayoutCache = new TextLayoutCache();
+        private final TextLayoutCache mSubtitleLayoutCache = new TextLayoutCache();
+
+        private LayoutJob(DocumentLayoutPrefetcher prefetcher, Key key) {
+            mTitle = key.mTitle;
+            mSubtitle = key.mSubtitle;
+            mTitlePaint = key.mStyle.createTitlePaint();
+            mSubtitlePaint = key.mStyle.createSubtitlePaint();
+            mWidth = key.mWidth;
+            mLayoutEngine.setPadding(prefetcher.mPaddingLeft, prefetcher.mPaddingTop, prefetcher.mPaddingRight,
+                    prefetcher.mPaddingBottom);
+            mLayoutEngine.setDecorSize(key.mStyle.getDecorSize());
+            mTitleLayoutCache.setLayoutQuality(prefetcher.mLayoutQuality);
+            mSubtitleLayoutCache.setLayoutQuality(prefetcher.mLayoutQuality);
+            mTitleLayoutCache.setMaxLines(prefetcher.mMaxTitleLines, prefetcher.mEllipsize);
+            mSubtitleLayoutCache.setMaxLines(prefetcher.mMaxSubtitleLines, prefetcher.mEllipsize);
+        }
+
+        @Override
+        public void run() {
+            //Only the width matters for the layouts.
+            mLayoutEngine.measure(DocumentLayoutEngine.makeMeasureSpec(mWidth, DocumentLayoutEngine.MODE_EXACTLY),
+                    DocumentLayoutEngine.makeMeasureSpec(0, DocumentLayoutEngine.MODE_UNSPECIFIED), this);
+        }
+
+        @Override
+        public boolean isEmpty(int text) {
+            return (text == DocumentLayoutEngine.TEXT_TITLE ? mTitle : mSubtitle).length() == 0;
+        }
+
+        @Override
+        public int measureWidth(int text, int maxWidth) {
+            if (text == DocumentLayoutEngine.TEXT_TITLE) {
+                return mTitleLayoutCache.getDesiredWidth(mTitle, mTitlePaint, maxWidth);
+            }
+            return mSubtitleLayoutCache.getDesiredWidth(mSubtitle, mSubtitlePaint, maxWidth);
+        }
+
+        @Override
+        public int layout(int text, int width) {
+            if (text == DocumentLayoutEngine.TEXT_TITLE) {
+                return mTitleLayoutCache.getLayout(mTitle, mTitlePaint, width).getHeight();
+            }
+            return mSubtitleLayoutCache.getLayout(mSubtitle, mSubtitlePaint, width).getHeight();
+        }
+    }
+
+    /**
+     * Identifies a prefetched document. Plain string texts are compared by content, any other text by reference, since its
+     * spans may change the layout.
+     */
+    private static final class Key {
+
+        private DocumentStyle mStyle;
+        private CharSequence mTitle;
+        private CharSequence mSubtitle;
+        private int mWidth;
+        private int mHashCode;
+
+        /**
+         * Set the document identified by the key.
+         * @param style the style.
+         * @param title the title.
+         * @param subtitle the subtitle.
+         * @param width the width of the document.
+         */
+        private void set(DocumentStyle style, CharSequence title, CharSequence subtitle, int width) {
+            mStyle = style;
+            mTitle = title;
+            mSubtitle = subtitle;
+            mWidth = width;
+            int result = style.hashCode();
+            result = 31 * result + hashText(title);
+            result = 31 * result + hashText(subtitle);
+            result = 31 * result + width;
+            mHashCode = result;
+        }
+
+        private static int hashText(CharSequence text) {
+            return text instanceof String ? text.hashCode() : System.identityHashCode(text);
+        }
+
+        private static boolean sameText(CharSequence a, CharSequence b) {
+            return a == b || (a instanceof String && a.equals(b));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mHashCode == key.mHashCode
+                    && mWidth == key.mWidth
+                    && mStyle.equals(key.mStyle)
+                    && sameText(mTitle, key.mTitle)
+                    && sameText(mSubtitle, key.mSubtitle);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+}
@@ -0,0 +1,542 @@
+package com.example.calvin.demo;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.view.View;
+
+import com.example.calvin.demo.layout.DocumentLayoutEngine;
+import com.example.calvin.demo.layout.TextMeasurer;
+
+/**
+ * Measures and draws a document, which is the borders, the triangle decoration at the bottom right corner and the title and
+ * subtitle of a {@link DocumentView}, onto any canvas. {@link DocumentView} draws with a renderer, and a renderer can be used
+ * without a view as well, for example to draw many documents within a single view.
+ *
+ * The paints are taken from a {@link DocumentStyle} and shared with everything else using that style. The text layouts are
+ * cached, so measuring again with unchanged text, style and width builds nothing, and neither measuring nor drawing allocates
+ * once the layouts are built. The paths only depend on the size, the decoration size and the border width, and are rebuilt
+ * when one of them changes.
+ *
+ * Unlike a view, a renderer has no background of its own. Set a background color through {@link #setBackgroundColor(int)}
+ * to fill the document except for the cut out corner.
+ *
+ * A renderer drawing with the paints of a style must only be used on the UI thread, since the paints of a style are. With
+ * private paints, a renderer can be used on any thread, one thread at a time.
+ */
+public final class DocumentRenderer {
+
+    //The style the paints are taken from, null if the paints have been set directly
+    private DocumentStyle mStyle;
+
+    //The paints used for drawing borders, decoration, title and subtitle
+    private Paint mBorderPaint;
+    private Paint mDecorPaint;
+    private TextPaint mTitlePaint;
+    private TextPaint mSubtitlePaint;
+
+    //The size of decoration square
+    private float mDecorSize;
+
+    //The paint used for filling the background, null if there is no background
+    private Paint mBackgroundPaint;
+
+    //The texts
+    private CharSequence mTitle = "";
+    private CharSequence mSubtitle = "";
+
+    //The caches that keep the text layouts across measure passes
+    private final TextLayoutCache mTitleLayoutCache = new TextLayoutCache();
+    private final TextLayoutCache mSubtitleLayoutCache = new TextLayoutCache();
+
+    //The sizing and placement of the texts
+    private final DocumentLayoutEngine mLayoutEngine = new DocumentLayoutEngine();
+
+    //Measures the texts for the layout engine with the layout caches
+    private final TextMeasurer mTextMeasurer = new CacheTextMeasurer();
+
+    //The text layouts obtained by the last measure pass, null before the first one
+    private Layout mTitleLayout;
+    private Layout mSubtitleLayout;
+
+    //The size of the document
+    private int mWidth;
+    private int mHeight;
+
+    //The values the paths have been built for, the paths are rebuilt if any of them differs
+    private int mGeometryWidth = -1;
+    private int mGeometryHeight = -1;
+    private float mGeometryDecorSize = -1;
+    private float mGeometryBorderWidth = -1;
+
+    //The path used for cropping out the bottom right corner
+    private final Path mDecorMaskPath = new Path();
+
+    //The path used for drawing decoration
+    private final Path mDecorPath = new Path();
+
+    //The path used for drawing borders
+    private final Path mBorderPath = new Path();
+
+    //The path used for filling the background, which leaves out the bottom right corner
+    private final Path mBackgroundPath = new Path();
+
+    //The areas title and subtitle have been drawn to, empty if they haven't been drawn
+    private final Rect mTitleBounds = new Rect();
+    private final Rect mSubtitleBounds = new Rect();
+
+    //The instrumentation numbers layout cache lookups are recorded to, null if they aren't recorded
+    private RenderStats mRenderStats;
+
+    /**
+     * Create a renderer without paints, which have to be set through {@link #setPaints(Paint, Paint, TextPaint, TextPaint, float)}
+     * before measuring.
+     */
+    DocumentRenderer() {
+    }
+
+    /**
+     * @param style the style to draw with.
+     */
+    public DocumentRenderer(DocumentStyle style) {
+        setStyle(style);
+    }
+
+    /**
+     * Draw with the paints of a style.
+     * @param style the style to draw with.
+     */
+    public void setStyle(DocumentStyle style) {
+        setPaints(style.getBorderPaint(), style.getDecorPaint(), style.getTitlePaint(), style.getSubtitlePaint(),
+                style.getDecorSize());
+        mStyle = style;
+    }
+
+    /**
+     * @return the style the renderer draws with, null if the paints have been set directly.
+     */
+    public DocumentStyle getStyle() {
+        return mStyle;
+    }
+
+    /**
+     * Draw with the given paints rather than those of a style, for example with the paints owned by a view or with private
+     * copies for drawing off the UI thread. The paints are not copied, so they must not be modified while in use unless the
+     * document is measured and drawn again.
+     * @param borderPaint the paint for drawing borders.
+     * @param decorPaint the paint for drawing decoration.
+     * @param titlePaint the paint for drawing title.
+     * @param subtitlePaint the paint for drawing subtitle.
+     * @param decorSize the size of the decoration in pixel.
+     */
+    void setPaints(Paint borderPaint, Paint decorPaint, TextPaint titlePaint, TextPaint subtitlePaint, float decorSize) {
+        mStyle = null;
+        mBorderPaint = borderPaint;
+        mDecorPaint = decorPaint;
+        mTitlePaint = titlePaint;
+        mSubtitlePaint = subtitlePaint;
+        mDecorSize = decorSize;
+        mLayoutEngine.setDecorSize(decorSize);
+    }
+
+    /**
+     * Set both title and subtitle. The texts are not copied, so they must not be modified unless the document is measured again.
+     * @param title the title, null for none.
+     * @param subtitle the subtitle, null for none.
+     */
+    public void setText(CharSequence title, CharSequence subtitle) {
+        mTitle = title == null ? "" : title;
+        mSubtitle = subtitle == null ? "" : subtitle;
+    }
+
+    /**
+     * @return the title.
+     */
+    public CharSequence getTitle() {
+        return mTitle;
+    }
+
+    /**
+     * @return the subtitle.
+     */
+    public CharSequence getSubtitle() {
+        return mSubtitle;
+    }
+
+    /**
+     * Set the padding around the texts. The decoration size is used instead of the right and bottom padding if it is larger.
+     * @param left the left padding in pixel.
+     * @param top the top padding in pixel.
+     * @param right the right padding in pixel.
+     * @param bottom the bottom padding in pixel.
+     */
+    public void setPadding(int left, int top, int right, int bottom) {
+        mLayoutEngine.setPadding(left, top, right, bottom);
+    }
+
+    /**
+     * Fill the document with a color before anything else is drawn. The bottom right corner is left out.
+     * @param color the background color, 0 for no background.
+     */
+    public void setBackgroundColor(int color) {
+        if (color == 0) {
+            mBackgroundPaint = null;
+            return;
+        }
+        if (mBackgroundPaint == null) {
+            mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mBackgroundPaint.setStyle(Paint.Style.FILL);
+        }
+        mBackgroundPaint.setColor(color);
+    }
+
+    /**
+     * Set the line breaking quality of title and subtitle.
+     * @param layoutQuality one of the DocumentView.LAYOUT_QUALITY_* constants.
+     */
+    public void setLayoutQuality(int layoutQuality) {
+        mTitleLayoutCache.setLayoutQuality(layoutQuality);
+        mSubtitleLayoutCache.setLayoutQuality(layoutQuality);
+    }
+
+    /**
+     * Measure the document based on the given requirements the same way {@link DocumentView#onMeasure(int, int)} does, and lay
+     * out the texts for drawing.
+     * @param widthMeasureSpec horizontal space requirements, encoded with {@link android.view.View.MeasureSpec}.
+     * @param heightMeasureSpec vertical space requirements, encoded with {@link android.view.View.MeasureSpec}.
+     */
+    public void measure(int widthMeasureSpec, int heightMeasureSpec) {
+        mLayoutEngine.measure(widthMeasureSpec, heightMeasureSpec, mTextMeasurer);
+    }
+
+    /**
+     * @return the measured width of the last measure pass.
+     */
+    public int getMeasuredWidth() {
+        return mLayoutEngine.getMeasuredWidth();
+    }
+
+    /**
+     * @return the measured height of the last measure pass.
+     */
+    public int getMeasuredHeight() {
+        return mLayoutEngine.getMeasuredHeight();
+    }
+
+    /**
+     * @return the width required to draw everything including padding, as of the last measure pass.
+     */
+    public int getDesiredWidth() {
+        return mLayoutEngine.getDesiredWidth();
+    }
+
+    /**
+     * @return the height required to draw everything including padding, as of the last measure pass.
+     */
+    public int getDesiredHeight() {
+        return mLayoutEngine.getDesiredHeight();
+    }
+
+    /**
+     * Set the size of the document to be drawn, usually the measured size.
+     * @param width the width in pixel.
+     * @param height the height in pixel.
+     */
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * @return the width of the document to be drawn.
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * @return the height of the document to be drawn.
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Lay out the document at a fixed size, as if measured with an exact size in both directions.
+     * @param width the width in pixel.
+     * @param height the height in pixel.
+     */
+    public void layout(int width, int height) {
+        measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        setSize(width, height);
+    }
+
+    /**
+     * Draw the document with its top left corner at the origin of the canvas. See {@link #draw(Canvas, Rect)}.
+     * @param canvas the canvas to draw on.
+     */
+    public void draw(Canvas canvas) {
+        draw(canvas, null);
+    }
+
+    /**
+     * Draw the document in the following steps with its top left corner at the origin of the canvas. Nothing is cut out of
+     * the canvas, so whatever is below the bottom right corner shows through.
+     *
+     * 1. Fill the background if there is one.
+     *
+     * 2. Draw decoration.
+     *
+     * 3. Draw borders.
+     *
+     * 4. Draw titles centered in the content area as laid out by the last measure pass. If there is not enough content space,
+     * they are left out.
+     *
+     * @param canvas the canvas to draw on.
+     * @param textClip the area the texts are clipped to, null to draw them as a whole.
+     */
+    void draw(Canvas canvas, Rect textClip) {
+        updateGeometry();
+        if (mBackgroundPaint != null) {
+            canvas.drawPath(mBackgroundPath, mBackgroundPaint);
+        }
+        canvas.drawPath(mDecorPath, mDecorPaint);
+        canvas.drawPath(mBorderPath, mBorderPaint);
+        drawText(canvas, textClip);
+    }
+
+    /**
+     * Draw title and subtitle and remember where they go.
+     * @param canvas the canvas to draw on.
+     * @param textClip the area the texts are clipped to, null to draw them as a whole.
+     */
+    private void drawText(Canvas canvas, Rect textClip) {
+        //The paints may have been replaced since measuring, or the layouts built off the UI thread with their own paints.
+        mTitleLayout = mTitleLayoutCache.updateDrawState(mTitleLayout, mTitlePaint);
+        mSubtitleLayout = mSubtitleLayoutCache.updateDrawState(mSubtitleLayout, mSubtitlePaint);
+        if (!placeText()) {
+            return;
+        }
+
+        //Save the canvas before coordination translation.
+        canvas.save();
+        if (textClip != null) {
+            canvas.clipRect(textClip);
+        }
+        //Move the coordinate to the beginning place of the title.
+        canvas.translate(mLayoutEngine.getContentLeft(), mLayoutEngine.getContentTop());
+        //Draw title if available. Move the coordinate to the beginning of subtitle afterwards.
+        if (mTitleLayout.getWidth() > 0) {
+            mTitleLayout.draw(canvas);
+            canvas.translate(0, mTitleLayout.getHeight());
+        }
+        //Draw subtitle if available.
+        if (mSubtitleLayout.getWidth() > 0) {
+            mSubtitleLayout.draw(canvas);
+        }
+        //Restore coordinate system.
+        canvas.restore();
+    }
+
+    /**
+     * Center the texts in the content space as laid out by the last measure pass, and remember where they go for redrawing
+     * them alone. This is done by every draw, and has to be done on its own if the document is drawn some other way.
+     * @return true if the texts are to be drawn, false if there is not enough content space.
+     */
+    boolean placeText() {
+        if (mTitleLayout == null || mSubtitleLayout == null) {
+            mTitleBounds.setEmpty();
+            mSubtitleBounds.setEmpty();
+            return false;
+        }
+        int titleWidth = mTitleLayout.getWidth();
+        int titleHeight = mTitleLayout.getHeight();
+        int subtitleWidth = mSubtitleLayout.getWidth();
+        int subtitleHeight = mSubtitleLayout.getHeight();
+
+        //Discard if there is not enough content space.
+        mLayoutEngine.place(mWidth, mHeight, titleWidth, titleHeight, subtitleWidth, subtitleHeight);
+        if (!mLayoutEngine.isContentVisible()) {
+            mTitleBounds.setEmpty();
+            mSubtitleBounds.setEmpty();
+            return false;
+        }
+
+        int contentLeft = mLayoutEngine.getContentLeft();
+        int contentTop = mLayoutEngine.getContentTop();
+        if (titleWidth > 0) {
+            mTitleBounds.set(contentLeft, contentTop, contentLeft + titleWidth, contentTop + titleHeight);
+            contentTop += titleHeight;
+        }else {
+            mTitleBounds.setEmpty();
+        }
+        if (subtitleWidth > 0) {
+            mSubtitleBounds.set(contentLeft, contentTop, contentLeft + subtitleWidth, contentTop + subtitleHeight);
+        }else {
+            mSubtitleBounds.setEmpty();
+        }
+        return true;
+    }
+
+    /**
+     * Build the mask, decoration, border and background paths unless they are up to date with the size, the decoration size
+     * and the border width.
+     */
+    private void updateGeometry() {
+        int width = mWidth;
+        int height = mHeight;
+        float borderWidth = mBorderPaint.getStrokeWidth();
+        if (width == mGeometryWidth && height == mGeometryHeight && mDecorSize == mGeometryDecorSize
+                && borderWidth == mGeometryBorderWidth) {
+            return;
+        }
+        mGeometryWidth = width;
+        mGeometryHeight = height;
+        mGeometryDecorSize = mDecorSize;
+        mGeometryBorderWidth = borderWidth;
+        float decorSize = mDecorSize;
+        float borderRadius = borderWidth / 2;
+
+        //The bottom right corner to be cropped out.
+        mDecorMaskPath.rewind();
+        mDecorMaskPath.moveTo(width, height);
+        mDecorMaskPath.lineTo(width - decorSize, height);
+        mDecorMaskPath.lineTo(width, height - decorSize);
+        mDecorMaskPath.close();
+
+        //The triangle decoration.
+        mDecorPath.rewind();
+        mDecorPath.moveTo(width - decorSize, height - decorSize);
+        mDecorPath.lineTo(width, height - decorSize);
+        mDecorPath.lineTo(width - decorSize, height);
+        mDecorPath.close();
+
+        //The borders.
+        mBorderPath.rewind();
+        mBorderPath.moveTo(width - decorSize, height - borderRadius);
+        mBorderPath.lineTo(borderRadius, height - borderRadius);
+        mBorderPath.lineTo(borderRadius, borderRadius);
+        mBorderPath.lineTo(width - borderRadius, borderRadius);
+        mBorderPath.lineTo(width - borderRadius, height - decorSize);
+        mBorderPath.lineTo(width - decorSize, height - borderRadius);
+        mBorderPath.lineTo(width - decorSize, height - decorSize);
+        mBorderPath.lineTo(width - borderRadius, height - decorSize);
+
+        //The background without the bottom right corner.
+        mBackgroundPath.rewind();
+        mBackgroundPath.moveTo(0, 0);
+        mBackgroundPath.lineTo(width, 0);
+        mBackgroundPath.lineTo(width, height - decorSize);
+        mBackgroundPath.lineTo(width - decorSize, height);
+        mBackgroundPath.lineTo(0, height);
+        mBackgroundPath.close();
+    }
+
+    /**
+     * Get the path covering the bottom right corner that is cut out of the document.
+     * @return the mask path, which must not be modified.
+     */
+    Path getDecorMaskPath() {
+        updateGeometry();
+        return mDecorMaskPath;
+    }
+
+    /**
+     * @return the area the title has been drawn to by the last draw, empty if it hasn't been drawn.
+     */
+    Rect getTitleBounds() {
+        return mTitleBounds;
+    }
+
+    /**
+     * @return the area the subtitle has been drawn to by the last draw, empty if it hasn't been drawn.
+     */
+    Rect getSubtitleBounds() {
+        return mSubtitleBounds;
+    }
+
+    /**
+     * @return the cache that keeps the title layout.
+     */
+    TextLayoutCache getTitleLayoutCache() {
+        return mTitleLayoutCache;
+    }
+
+    /**
+     * @return the cache that keeps the subtitle layout.
+     */
+    TextLayoutCache getSubtitleLayoutCache() {
+        return mSubtitleLayoutCache;
+    }
+
+    /**
+     * Record layout cache lookups while {@link RenderStats#isEnabled()}.
+     * @param renderStats the numbers to record to, null to record nothing.
+     */
+    void setRenderStats(RenderStats renderStats) {
+        mRenderStats = renderStats;
+    }
+
+    /**
+     * Drop the text layouts so that nothing is kept in memory for a document that isn't drawn for now. They are built again by
+     * the next measure pass.
+     */
+    void recycle() {
+        mTitleLayoutCache.dropLayout();
+        mSubtitleLayoutCache.dropLayout();
+        mTitleLayout = null;
+        mSubtitleLayout = null;
+        mTitle = "";
+        mSubtitle = "";
+    }
+
+    /**
+     * Measures the texts for {@link #mLayoutEngine} with the layout caches, and keeps the obtained layouts for drawing.
+     */
+    private class CacheTextMeasurer implements TextMeasurer {
+
+        @Override
+        public boolean isEmpty(int text) {
+            return getText(text).length() == 0;
+        }
+
+        @Override
+        public int measureWidth(int text, int maxWidth) {
+            //The width is cached until the text or its paint changes.
+            return getLayoutCache(text).getDesiredWidth(getText(text), getPaint(text), maxWidth);
+        }
+
+        @Override
+        public int layout(int text, int width) {
+            //The layout is only rebuilt if the text, the paint or the width has changed.
+            TextLayoutCache cache = getLayoutCache(text);
+            int buildCount = cache.getBuildCount();
+            Layout layout = cache.getLayout(getText(text), getPaint(text), width);
+            if (text == DocumentLayoutEngine.TEXT_TITLE) {
+                mTitleLayout = layout;
+            }else {
+                mSubtitleLayout = layout;
+            }
+            if (mRenderStats != null && RenderStats.isEnabled()) {
+                mRenderStats.recordLayoutCache(buildCount == cache.getBuildCount());
+            }
+            return layout.getHeight();
+        }
+
+        private CharSequence getText(int text) {
+            return text == DocumentLayoutEngine.TEXT_TITLE ? mTitle : mSubtitle;
+        }
+
+        private TextPaint getPaint(int text) {
+            return text == DocumentLayoutEngine.TEXT_TITLE ? mTitlePaint : mSubtitlePaint;
+        }
+
+        private TextLayoutCache getLayoutCache(int text) {
+            return text == DocumentLayoutEngine.TEXT_TITLE ? mTitleLayoutCache : mSubtitleLayoutCache;
+        }
+    }
+}
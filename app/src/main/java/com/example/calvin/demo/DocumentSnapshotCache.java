@@ -0,0 +1,235 @@
+package com.example.calvin.demo;
+
+import android.graphics.Bitmap;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+/**
+ * A memory bounded cache of rendered documents for the snapshot mode of {@link DocumentView}, see
+ * {@link DocumentView#setSnapshotCache(DocumentSnapshotCache)}. A document is rendered into a bitmap once, and every view
+ * that shows the same document at the same size draws that bitmap instead of its borders, decoration and texts. The bitmaps
+ * leave out the view background, so views with different backgrounds share them as well.
+ *
+ * Documents are identified by their style, texts, size, padding and line breaking configuration. The least recently used
+ * bitmaps are evicted once the bitmaps take more than the maximum size, and the numbers of hits, misses and evictions can
+ * be read to tune the size. A cache can be shared by any number of views. Must only be used on the UI thread.
+ */
+public final class DocumentSnapshotCache {
+
+    //The share of the memory available to the app that the default cache takes
+    private static final int DEFAULT_MEMORY_SHARE = 16;
+
+    //The cache shared by all views that don't bring their own, created on first use
+    private static DocumentSnapshotCache sDefault;
+
+    //The bitmaps by document
+    private final LruCache<Key, Bitmap> mCache;
+
+    /**
+     * @param maxSizeInBytes the maximum number of bytes the bitmaps may take.
+     */
+    public DocumentSnapshotCache(int maxSizeInBytes) {
+        mCache = new LruCache<Key, Bitmap>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Get the cache shared by default, which takes up to a sixteenth of the memory available to the app.
+     * @return the default cache.
+     */
+    public static DocumentSnapshotCache getDefault() {
+        if (sDefault == null) {
+            sDefault = new DocumentSnapshotCache((int) Math.min(Runtime.getRuntime().maxMemory() / DEFAULT_MEMORY_SHARE,
+                    Integer.MAX_VALUE));
+        }
+        return sDefault;
+    }
+
+    /**
+     * Look up the bitmap of a document.
+     * @param key the document, which may be reused for the next lookup.
+     * @return the bitmap, null if there is none.
+     */
+    Bitmap get(Key key) {
+        return mCache.get(key);
+    }
+
+    /**
+     * Add the bitmap of a document unless it is larger than the whole cache.
+     * @param key the document. A copy is kept, so the key may be reused.
+     * @param bitmap the bitmap of the document, which must not be modified afterwards.
+     * @return true if the bitmap has been added.
+     */
+    boolean put(Key key, Bitmap bitmap) {
+        if (bitmap.getByteCount() > mCache.maxSize()) {
+            return false;
+        }
+        mCache.put(key.copy(), bitmap);
+        return true;
+    }
+
+    /**
+     * @return the number of lookups that found a bitmap.
+     */
+    public int getHitCount() {
+        return mCache.hitCount();
+    }
+
+    /**
+     * @return the number of lookups that found no bitmap, each followed by rendering one.
+     */
+    public int getMissCount() {
+        return mCache.missCount();
+    }
+
+    /**
+     * @return the number of bitmaps evicted to stay within the maximum size.
+     */
+    public int getEvictionCount() {
+        return mCache.evictionCount();
+    }
+
+    /**
+     * @return the number of bytes the bitmaps take.
+     */
+    public int getSizeInBytes() {
+        return mCache.size();
+    }
+
+    /**
+     * @return the maximum number of bytes the bitmaps may take.
+     */
+    public int getMaxSizeInBytes() {
+        return mCache.maxSize();
+    }
+
+    /**
+     * Evict the least recently used bitmaps until the rest takes no more than the given size, for example when the system
+     * runs low on memory.
+     * @param maxSizeInBytes the number of bytes the remaining bitmaps may take.
+     */
+    public void trimToSize(int maxSizeInBytes) {
+        mCache.trimToSize(maxSizeInBytes);
+    }
+
+    /**
+     * Evict all bitmaps.
+     */
+    public void evictAll() {
+        mCache.evictAll();
+    }
+
+    /**
+     * Identifies a rendered document. A view keeps a key of its own and updates it for every lookup, so looking up a document
+     * doesn't allocate.
+     */
+    static final class Key {
+
+        private DocumentStyle mStyle;
+        private String mTitle;
+        private String mSubtitle;
+        private int mWidth;
+        private int mHeight;
+        private int mPaddingLeft;
+        private int mPaddingTop;
+        private int mPaddingRight;
+        private int mPaddingBottom;
+        private int mLayoutQuality;
+        private int mMaxTitleLines;
+        private int mMaxSubtitleLines;
+        private TextUtils.TruncateAt mEllipsize;
+        private int mHashCode;
+
+        /**
+         * Set the document identified by the key.
+         * @param style the style.
+         * @param title the title.
+         * @param subtitle the subtitle.
+         * @param width the width of the document.
+         * @param height the height of the document.
+         * @param paddingLeft the left padding.
+         * @param paddingTop the top padding.
+         * @param paddingRight the right padding.
+         * @param paddingBottom the bottom padding.
+         * @param layoutQuality the line breaking quality.
+         * @param maxTitleLines the maximum number of title lines.
+         * @param maxSubtitleLines the maximum number of subtitle lines.
+         * @param ellipsize where the texts are ellipsized, null if they are cut off.
+         */
+        void set(DocumentStyle style, String title, String subtitle, int width, int height, int paddingLeft, int paddingTop,
+                 int paddingRight, int paddingBottom, int layoutQuality, int maxTitleLines, int maxSubtitleLines,
+                 TextUtils.TruncateAt ellipsize) {
+            mStyle = style;
+            mTitle = title;
+            mSubtitle = subtitle;
+            mWidth = width;
+            mHeight = height;
+            mPaddingLeft = paddingLeft;
+            mPaddingTop = paddingTop;
+            mPaddingRight = paddingRight;
+            mPaddingBottom = paddingBottom;
+            mLayoutQuality = layoutQuality;
+            mMaxTitleLines = maxTitleLines;
+            mMaxSubtitleLines = maxSubtitleLines;
+            mEllipsize = ellipsize;
+            int result = style.hashCode();
+            result = 31 * result + title.hashCode();
+            result = 31 * result + subtitle.hashCode();
+            result = 31 * result + width;
+            result = 31 * result + height;
+            result = 31 * result + paddingLeft;
+            result = 31 * result + paddingTop;
+            result = 31 * result + paddingRight;
+            result = 31 * result + paddingBottom;
+            result = 31 * result + layoutQuality;
+            result = 31 * result + maxTitleLines;
+            result = 31 * result + maxSubtitleLines;
+            result = 31 * result + (ellipsize == null ? 0 : ellipsize.ordinal() + 1);
+            mHashCode = result;
+        }
+
+        /**
+         * @return a new key identifying the same document.
+         */
+        private Key copy() {
+            Key key = new Key();
+            key.set(mStyle, mTitle, mSubtitle, mWidth, mHeight, mPaddingLeft, mPaddingTop, mPaddingRight, mPaddingBottom,
+                    mLayoutQuality, mMaxTitleLines, mMaxSubtitleLines, mEllipsize);
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mHashCode == key.mHashCode
+                    && mWidth == key.mWidth
+                    && mHeight == key.mHeight
+                    && mPaddingLeft == key.mPaddingLeft
+                    && mPaddingTop == key.mPaddingTop
+                    && mPaddingRight == key.mPaddingRight
+                    && mPaddingBottom == key.mPaddingBottom
+                    && mLayoutQuality == key.mLayoutQuality
+                    && mMaxTitleLines == key.mMaxTitleLines
+                    && mMaxSubtitleLines == key.mMaxSubtitleLines
+                    && mEllipsize == key.mEllipsize
+                    && mStyle.equals(key.mStyle)
+                    && mTitle.equals(key.mTitle)
+                    && mSubtitle.equals(key.mSubtitle);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.calvin.demo;
+
+import android.content.Context;
+import android.graphics.Paint;
+import android.text.TextPaint;
+
+/**
+ * An immutable set of style values for {@link DocumentView}, namely colors, sizes, border width and decoration size. A style can be
+ * shared by any number of views. The paints configured from it are created once per style and shared by all views using it, so
+ * many documents with an identical style don't each carry their own paints.
+ *
+ * Use {@link Builder} to create a style, or {@link #buildUpon()} to derive one from an existing style.
+ */
+public final class DocumentStyle {
+
+    //Default border color
+    static final int DEFAULT_BORDER_COLOR = 0xFF000000;
+
+    //Default border width in dip
+    static final int DEFAULT_BORDER_WIDTH_IN_DIP = 1;
+
+    //Default decoration color
+    static final int DEFAULT_DECOR_COLOR = 0xFF888888;
+
+    //Default title color
+    static final int DEFAULT_TITLE_COLOR = 0xFF000000;
+
+    //Default subtitle color
+    static final int DEFAULT_SUBTITLE_COLOR = 0xFF888888;
+
+    //Default decoration size
+    static final int DEFAULT_DECOR_SIZE_IN_DIP = 20;
+
+    //Default title and subtitle text size in sp
+    static final int DEFAULT_TEXT_SIZE_IN_SP = 16;
+
+    private final int mBorderColor;
+    private final float mBorderWidth;
+    private final int mDecorColor;
+    private final float mDecorSize;
+    private final int mTitleColor;
+    private final float mTitleSize;
+    private final int mSubtitleColor;
+    private final float mSubtitleSize;
+
+    //The shared paints, created on first use. They must never be modified.
+    private Paint mBorderPaint;
+    private Paint mDecorPaint;
+    private TextPaint mTitlePaint;
+    private TextPaint mSubtitlePaint;
+
+    private DocumentStyle(Builder builder) {
+        mBorderColor = builder.mBorderColor;
+        mBorderWidth = builder.mBorderWidth;
+        mDecorColor = builder.mDecorColor;
+        mDecorSize = builder.mDecorSize;
+        mTitleColor = builder.mTitleColor;
+        mTitleSize = builder.mTitleSize;
+        mSubtitleColor = builder.mSubtitleColor;
+        mSubtitleSize = builder.mSubtitleSize;
+    }
+
+    /**
+     * @return the border color.
+     */
+    public int getBorderColor() {
+        return mBorderColor;
+    }
+
+    /**
+     * @return the border width in pixel.
+     */
+    public float getBorderWidth() {
+        return mBorderWidth;
+    }
+
+    /**
+     * @return the decoration color.
+     */
+    public int getDecorColor() {
+        return mDecorColor;
+    }
+
+    /**
+     * @return the decoration size in pixel.
+     */
+    public float getDecorSize() {
+        return mDecorSize;
+    }
+
+    /**
+     * @return the title text color.
+     */
+    public int getTitleColor() {
+        return mTitleColor;
+    }
+
+    /**
+     * @return the title text size in pixel.
+     */
+    public float getTitleSize() {
+        return mTitleSize;
+    }
+
+    /**
+     * @return the subtitle text color.
+     */
+    public int getSubtitleColor() {
+        return mSubtitleColor;
+    }
+
+    /**
+     * @return the subtitle text size in pixel.
+     */
+    public float getSubtitleSize() {
+        return mSubtitleSize;
+    }
+
+    /**
+     * Create a builder initialized with the values of this style.
+     * @return the new builder.
+     */
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    /**
+     * Get the shared paint for drawing borders. Must only be used on the UI thread and never be modified.
+     * @return the shared border paint.
+     */
+    Paint getBorderPaint() {
+        if (mBorderPaint == null) {
+            mBorderPaint = createBorderPaint();
+        }
+        return mBorderPaint;
+    }
+
+    /**
+     * Get the shared paint for drawing decoration. Must only be used on the UI thread and never be modified.
+     * @return the shared decoration paint.
+     */
+    Paint getDecorPaint() {
+        if (mDecorPaint == null) {
+            mDecorPaint = createDecorPaint();
+        }
+        return mDecorPaint;
+    }
+
+    /**
+     * Get the shared paint for drawing title. Must only be used on the UI thread and never be modified.
+     * @return the shared title paint.
+     */
+    TextPaint getTitlePaint() {
+        if (mTitlePaint == null) {
+            mTitlePaint = createTitlePaint();
+        }
+        return mTitlePaint;
+    }
+
+    /**
+     * Get the shared paint for drawing subtitle. Must only be used on the UI thread and never be modified.
+     * @return the shared subtitle paint.
+     */
+    TextPaint getSubtitlePaint() {
+        if (mSubtitlePaint == null) {
+            mSubtitlePaint = createSubtitlePaint();
+        }
+        return mSubtitlePaint;
+    }
+
+    /**
+     * Create a new paint for drawing borders, for example to draw on a background thread. It only depends on the immutable
+     * values of the style, so it can be created on any thread.
+     * @return the new border paint.
+     */
+    Paint createBorderPaint() {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setColor(mBorderColor);
+        paint.setStrokeWidth(mBorderWidth);
+        return paint;
+    }
+
+    /**
+     * Create a new paint for drawing decoration. Can be called on any thread.
+     * @return the new decoration paint.
+     */
+    Paint createDecorPaint() {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(mDecorColor);
+        return paint;
+    }
+
+    /**
+     * Create a new paint for drawing title. Can be called on any thread.
+     * @return the new title paint.
+     */
+    TextPaint createTitlePaint() {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(mTitleColor);
+        paint.setTextSize(mTitleSize);
+        return paint;
+    }
+
+    /**
+     * Create a new paint for drawing subtitle. Can be called on any thread.
+     * @return the new subtitle paint.
+     */
+    TextPaint createSubtitlePaint() {
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(mSubtitleColor);
+        paint.setTextSize(mSubtitleSize);
+        return paint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DocumentStyle)) {
+            return false;
+        }
+        DocumentStyle style = (DocumentStyle) o;
+        return mBorderColor == style.mBorderColor
+                && Float.compare(mBorderWidth, style.mBorderWidth) == 0
+                && mDecorColor == style.mDecorColor
+                && Float.compare(mDecorSize, style.mDecorSize) == 0
+                && mTitleColor == style.mTitleColor
+                && Float.compare(mTitleSize, style.mTitleSize) == 0
+                && mSubtitleColor == style.mSubtitleColor
+                && Float.compare(mSubtitleSize, style.mSubtitleSize) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mBorderColor;
+        result = 31 * result + Float.floatToIntBits(mBorderWidth);
+        result = 31 * result + mDecorColor;
+        result = 31 * result + Float.floatToIntBits(mDecorSize);
+        result = 31 * result + mTitleColor;
+        result = 31 * result + Float.floatToIntBits(mTitleSize);
+        result = 31 * result + mSubtitleColor;
+        result = 31 * result + Float.floatToIntBits(mSubtitleSize);
+        return result;
+    }
+
+    /**
+     * A builder for {@link DocumentStyle}.
+     */
+    public static final class Builder {
+
+        private int mBorderColor = DEFAULT_BORDER_COLOR;
+        private float mBorderWidth;
+        private int mDecorColor = DEFAULT_DECOR_COLOR;
+        private float mDecorSize;
+        private int mTitleColor = DEFAULT_TITLE_COLOR;
+        private float mTitleSize;
+        private int mSubtitleColor = DEFAULT_SUBTITLE_COLOR;
+        private float mSubtitleSize;
+
+        /**
+         * Create a builder with the default colors and all sizes set to 0.
+         */
+        public Builder() {
+        }
+
+        /**
+         * Create a builder with the same defaults {@link DocumentView} uses when inflated without attributes.
+         * @param context the context to resolve the default sizes with.
+         */
+        public Builder(Context context) {
+            this(DocumentAttributeCache.getDefaults(context.getResources().getDisplayMetrics()));
+        }
+
+        /**
+         * Create a builder initialized with the values of the given style.
+         * @param style the style to copy the values from.
+         */
+        public Builder(DocumentStyle style) {
+            mBorderColor = style.mBorderColor;
+            mBorderWidth = style.mBorderWidth;
+            mDecorColor = style.mDecorColor;
+            mDecorSize = style.mDecorSize;
+            mTitleColor = style.mTitleColor;
+            mTitleSize = style.mTitleSize;
+            mSubtitleColor = style.mSubtitleColor;
+            mSubtitleSize = style.mSubtitleSize;
+        }
+
+        /**
+         * @param borderColor the border color to be set.
+         * @return this builder.
+         */
+        public Builder setBorderColor(int borderColor) {
+            mBorderColor = borderColor;
+            return this;
+        }
+
+        /**
+         * @param borderWidth the border width in pixel.
+         * @return this builder.
+         */
+        public Builder setBorderWidth(float borderWidth) {
+            mBorderWidth = borderWidth;
+            return this;
+        }
+
+        /**
+         * @param decorColor the decoration color to be set.
+         * @return this builder.
+         */
+        public Builder setDecorColor(int decorColor) {
+            mDecorColor = decorColor;
+            return this;
+        }
+
+        /**
+         * @param decorSize the decoration size in pixel.
+         * @return this builder.
+         */
+        public Builder setDecorSize(float decorSize) {
+            mDecorSize = decorSize;
+            return this;
+        }
+
+        /**
+         * @param titleColor the title text color to be set.
+         * @return this builder.
+         */
+        public Builder setTitleColor(int titleColor) {
+            mTitleColor = titleColor;
+            return this;
+        }
+
+        /**
+         * @param titleSize the title text size in pixel.
+         * @return this builder.
+         */
+        public Builder setTitleSize(float titleSize) {
+            mTitleSize = titleSize;
+            return this;
+        }
+
+        /**
+         * @param subtitleColor the subtitle text color to be set.
+         * @return this builder.
+         */
+        public Builder setSubtitleColor(int subtitleColor) {
+            mSubtitleColor = subtitleColor;
+            return this;
+        }
+
+        /**
+         * @param subtitleSize the subtitle text size in pixel.
+         * @return this builder.
+         */
+        public Builder setSubtitleSize(float subtitleSize) {
+            mSubtitleSize = subtitleSize;
+            return this;
+        }
+
+        /**
+         * @return a new style with the values of this builder.
+         */
+        public DocumentStyle build() {
+            return new DocumentStyle(this);
+        }
+    }
+}
@@ -1,52 +1,199 @@
 package com.example.calvin.demo;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
 import android.content.Context;
-import android.content.res.TypedArray;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.Region;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.Nullable;
-import android.text.Layout;
+import android.text.Editable;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
 import android.text.StaticLayout;
 import android.text.TextPaint;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.util.AttributeSet;
-import android.util.TypedValue;
+import android.util.DisplayMetrics;
+import android.util.Property;
 import android.view.View;
+import android.view.ViewGroup;
+
+import com.example.calvin.demo.layout.DocumentLayoutEngine;
+import com.example.calvin.demo.layout.TextMeasurer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * A custom view that can contain both title and subtitle. In addition, it has borders around and a triangle decoration at the bottom right corner.
  * Note that rather than using our own custom attribute for background, we instead reuse the view's background and draw everything else upon it. Therefore,
  * the background drawable is not limited to be a simple {@link android.graphics.drawable.ColorDrawable}.
+ * Views with an identical look can share a {@link DocumentStyle} and with it their paints.
  */
 public class DocumentView extends View {
 
-    //Default border color
-    private static final int DEFAULT_BORDER_COLOR = 0xFF000000;
+    /**
+     * Render mode that cuts out the bottom right corner without an offscreen layer and is the default. A color background is
+     * filled with the corner left out, which looks just like {@link #RENDER_MODE_LAYER}. Any other background drawable is
+     * clipped since Pie, where path clips are anti-aliased on a hardware canvas, and falls back to a layer before.
+     */
+    public static final int RENDER_MODE_CLIP = 0;
+
+    /**
+     * Render mode that draws into a hardware layer and clears the bottom right corner out of it.
+     */
+    public static final int RENDER_MODE_LAYER = 1;
+
+    /**
+     * Layout quality that breaks lines the simple way without hyphenation. It is the cheapest to measure and the default.
+     */
+    public static final int LAYOUT_QUALITY_FAST = 0;
+
+    /**
+     * Layout quality that balances line lengths and hyphenates. Only takes effect since Marshmallow.
+     */
+    public static final int LAYOUT_QUALITY_BALANCED = 1;
+
+    /**
+     * Layout quality that optimizes the whole paragraph and hyphenates. Only takes effect since Marshmallow.
+     */
+    public static final int LAYOUT_QUALITY_HIGH = 2;
+
+    /**
+     * The border color, for use with {@link android.animation.ObjectAnimator} and an {@link android.animation.ArgbEvaluator}.
+     * The animator boxes every value, so prefer {@link #animateTo(DocumentStyle, long)} for transitions between styles.
+     */
+    public static final Property<DocumentView, Integer> BORDER_COLOR = new Property<DocumentView, Integer>(Integer.class, "borderColor") {
+        @Override
+        public Integer get(DocumentView view) {
+            return view.mBorderPaint.getColor();
+        }
+
+        @Override
+        public void set(DocumentView view, Integer value) {
+            view.setBorderColor(value);
+        }
+    };
+
+    /**
+     * The border width in pixel, for use with {@link android.animation.ObjectAnimator}. Changing it doesn't require a new
+     * layout pass.
+     */
+    public static final Property<DocumentView, Float> BORDER_WIDTH = new Property<DocumentView, Float>(Float.class, "borderWidth") {
+        @Override
+        public Float get(DocumentView view) {
+            return view.mBorderPaint.getStrokeWidth();
+        }
+
+        @Override
+        public void set(DocumentView view, Float value) {
+            view.setBorderWidth(value);
+        }
+    };
+
+    /**
+     * The decoration color, for use with {@link android.animation.ObjectAnimator} and an {@link android.animation.ArgbEvaluator}.
+     * Only the decoration is redrawn on changes.
+     */
+    public static final Property<DocumentView, Integer> DECOR_COLOR = new Property<DocumentView, Integer>(Integer.class, "decorColor") {
+        @Override
+        public Integer get(DocumentView view) {
+            return view.mDecorPaint.getColor();
+        }
+
+        @Override
+        public void set(DocumentView view, Integer value) {
+            view.setDecorColor(value);
+        }
+    };
+
+    /**
+     * The decoration size in pixel, for use with {@link android.animation.ObjectAnimator}. It takes part in the padding, so a
+     * layout pass is requested whenever the measured size changes.
+     */
+    public static final Property<DocumentView, Float> DECOR_SIZE = new Property<DocumentView, Float>(Float.class, "decorSize") {
+        @Override
+        public Float get(DocumentView view) {
+            return view.mDecorSize;
+        }
+
+        @Override
+        public void set(DocumentView view, Float value) {
+            view.setDecorSize(value);
+        }
+    };
+
+    /**
+     * The title text color, for use with {@link android.animation.ObjectAnimator} and an {@link android.animation.ArgbEvaluator}.
+     * Only the title is redrawn on changes.
+     */
+    public static final Property<DocumentView, Integer> TITLE_COLOR = new Property<DocumentView, Integer>(Integer.class, "titleColor") {
+        @Override
+        public Integer get(DocumentView view) {
+            return view.mTitlePaint.getColor();
+        }
+
+        @Override
+        public void set(DocumentView view, Integer value) {
+            view.setTitleColor(value);
+        }
+    };
+
+    /**
+     * The subtitle text color, for use with {@link android.animation.ObjectAnimator} and an {@link android.animation.ArgbEvaluator}.
+     * Only the subtitle is redrawn on changes.
+     */
+    public static final Property<DocumentView, Integer> SUBTITLE_COLOR = new Property<DocumentView, Integer>(Integer.class, "subtitleColor") {
+        @Override
+        public Integer get(DocumentView view) {
+            return view.mSubtitlePaint.getColor();
+        }
+
+        @Override
+        public void set(DocumentView view, Integer value) {
+            view.setSubtitleColor(value);
+        }
+    };
+
+    //Flags for each paint that can be shared with a style
+    private static final int PAINT_BORDER = 1;
+    private static final int PAINT_DECOR = 1 << 1;
+    private static final int PAINT_TITLE = 1 << 2;
+    private static final int PAINT_SUBTITLE = 1 << 3;
 
-    //Default border width in dip
-    private static final int DEFAULT_BORDER_WIDTH_IN_DIP = 1;
+    //Paint used for cropping out the bottom right corner, which is the same for all views
+    private static Paint sDecorMaskPaint;
 
-    //Default decoration color
-    private static final int DEFAULT_DECOR_COLOR = 0xFF888888;
+    //The style the paints are taken from, null if the view has been changed through its own setters since
+    private DocumentStyle mStyle;
 
-    //Default title color
-    private static final int DEFAULT_TITLE_COLOR = 0xFF000000;
+    //The shared style this view is bound to
+    private SharedDocumentStyle mSharedStyle;
 
-    //Default subtitle color
-    private static final int DEFAULT_SUBTITLE_COLOR = 0xFF888888;
+    //The style last taken from the shared style
+    private DocumentStyle mAppliedSharedStyle;
 
-    //Default decoration size
-    private static final int DEFAULT_DECOR_SIZE_IN_DIP = 20;
+    //Whether the view is attached to a window
+    private boolean mAttached;
 
-    //Default title and subtitle text size in sp
-    private static final int DEFAULT_TEXT_SIZE_IN_SP = 16;
+    //The paints that are owned by this view rather than shared with a style
+    private int mOwnedPaints;
 
     //Paint used for drawing borders
     private Paint mBorderPaint;
@@ -60,32 +207,130 @@ public class DocumentView extends View {
     //Paint used for drawing
     private TextPaint mSubtitlePaint;
 
-    //Paint used for cropping out the bottom right corner
-    private Paint mDecorMaskPaint;
-
     //The size of decoration square
     private float mDecorSize;
 
-    //The path used for cropping out the bottom right corner
-    private Path mDecorMaskPath;
-
-    //The path used for drawing decoration
-    private Path mDecorPath;
-
-    //The path used for drawing borders
-    private Path mBorderPath;
+    //Measures and draws the borders, the decoration and the texts with the paints of this view
+    private DocumentRenderer mRenderer;
 
     //The title
-    private CharSequence mTitle;
+    private CharSequence mTitle = "";
 
     //The subtitle
-    private CharSequence mSubtitle;
+    private CharSequence mSubtitle = "";
+
+    //The editable subtitle handed out by getEditableSubtitle, null until first used
+    private Editable mEditableSubtitle;
+
+    //Lays out the subtitle again whenever the editable subtitle is edited
+    private final TextWatcher mSubtitleWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            if (s == mSubtitle) {
+                mTextGeneration++;
+                mSubtitleLayoutCache.onTextChanged();
+                requestContentLayout();
+            }
+        }
+    };
+
+    //The way the bottom right corner is cut out
+    private int mRenderMode = RENDER_MODE_CLIP;
+
+    //The line breaking quality of title and subtitle
+    private int mLayoutQuality = LAYOUT_QUALITY_FAST;
+
+    //Whether only the text around the visible part of the view is recorded for hardware accelerated drawing
+    private boolean mClipToViewport = true;
+
+    //Tracks the visible part of the view while it is attached
+    private ViewportTracker mViewportTracker;
+
+    //The cache of rendered documents drawn instead of the content, null unless snapshot mode is on
+    private DocumentSnapshotCache mSnapshotCache;
+
+    //The key of the document shown, reused for every lookup in the snapshot cache
+    private DocumentSnapshotCache.Key mSnapshotKey;
+
+    //The prefetcher whose layouts are taken over at measure time, null if none
+    private DocumentLayoutPrefetcher mLayoutPrefetcher;
+
+    //The area of the text to be drawn, reused on every draw
+    private Rect mDrawRect;
+
+    //The maximum number of lines of title and subtitle, Integer.MAX_VALUE if unlimited
+    private int mMaxTitleLines = Integer.MAX_VALUE;
+    private int mMaxSubtitleLines = Integer.MAX_VALUE;
+
+    //Where title and subtitle are ellipsized if they have more lines than allowed, null to cut them off
+    private TextUtils.TruncateAt mEllipsize;
+
+    //The cache that keeps the title layout across measure passes, owned by the renderer
+    private TextLayoutCache mTitleLayoutCache;
+
+    //The cache that keeps the subtitle layout across measure passes, owned by the renderer
+    private TextLayoutCache mSubtitleLayoutCache;
+
+    //The width requirement of the last measure pass, used to precompute text layouts for the expected width
+    private int mLastWidthMeasureSpec;
+
+    //The height requirement of the last measure pass
+    private int mLastHeightMeasureSpec;
+
+    //Whether the view has been measured at least once
+    private boolean mHasMeasured;
+
+    //The size required to draw everything, as calculated by the last measure pass
+    private int mDesiredWidth;
+    private int mDesiredHeight;
+
+    //The results of the last call to measureContent, which are not necessarily committed
+    private int mMeasureWidth;
+    private int mMeasureHeight;
+    private int mMeasureDesiredWidth;
+    private int mMeasureDesiredHeight;
 
-    //The helper layout for drawing title
-    private Layout mTitleLayout;
+    //Incremented on every text change so that outdated results of asynchronous text layout are dropped
+    private int mTextGeneration;
 
-    //The helper layout for drawing subtitle
-    private Layout mSubtitleLayout;
+    //The handler used for handing asynchronous text layout results over to the UI thread
+    private static Handler sMainHandler;
+
+    //The instrumentation numbers of this view, created on first use
+    private RenderStats mRenderStats;
+
+    //The running transition started by animateTo, created on first use
+    private StyleTransition mStyleTransition;
+
+    //Nesting depth of edit transactions, invalidation and layout requests are deferred while it is positive
+    private int mBatchDepth;
+
+    //Whether the paths have to be rebuilt at the end of the current edit transaction
+    private boolean mPendingGeometry;
+
+    //Whether the view has to be redrawn at the end of the current edit transaction
+    private boolean mPendingInvalidate;
+
+    //The area to be redrawn at the end of the current edit transaction, unless the whole view is
+    private Rect mPendingDirty;
+
+    //The areas title and subtitle have been drawn to, empty if they haven't been drawn, owned by the renderer
+    private Rect mTitleBounds;
+    private Rect mSubtitleBounds;
+
+    //Reused for computing an area to be redrawn
+    private Rect mDirtyRect;
+
+    //Whether the view has to be laid out at the end of the current edit transaction
+    private boolean mPendingLayout;
 
     /**
      * {@inheritDoc}
@@ -121,22 +366,23 @@ public class DocumentView extends View {
     }
 
     /**
-     * Initialize all paints and paths. Also enable hardware acceleration for this view.
+     * Initialize the renderer and its layout caches. The paints are taken from the style later on.
      */
     private void initialize() {
-        setLayerType(LAYER_TYPE_HARDWARE, null);
-        mBorderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mBorderPaint.setStyle(Paint.Style.STROKE);
-        mDecorPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mDecorPaint.setStyle(Paint.Style.FILL);
-        mTitlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
-        mSubtitlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
-        mDecorMaskPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mDecorMaskPaint.setStyle(Paint.Style.FILL_AND_STROKE);
-        mDecorMaskPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
-        mDecorMaskPath = new Path();
-        mDecorPath = new Path();
-        mBorderPath = new Path();
+        if (sDecorMaskPaint == null) {
+            sDecorMaskPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            sDecorMaskPaint.setStyle(Paint.Style.FILL_AND_STROKE);
+            sDecorMaskPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+        }
+        mRenderer = new DocumentRenderer();
+        mTitleLayoutCache = mRenderer.getTitleLayoutCache();
+        mSubtitleLayoutCache = mRenderer.getSubtitleLayoutCache();
+        mViewportTracker = new ViewportTracker(this, true);
+        mDrawRect = new Rect();
+        mPendingDirty = new Rect();
+        mTitleBounds = mRenderer.getTitleBounds();
+        mSubtitleBounds = mRenderer.getSubtitleBounds();
+        mDirtyRect = new Rect();
     }
 
     /**
@@ -154,40 +400,148 @@ public class DocumentView extends View {
      */
     private void initializeAttributes(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
 
-        TypedArray array = context.obtainStyledAttributes(attrs, R.styleable.DocumentView, defStyleAttr, defStyleRes);
-        if (array != null) {
-            int borderColor = array.getColor(R.styleable.DocumentView_borderColor, DEFAULT_BORDER_COLOR);
-            mBorderPaint.setColor(borderColor);
+        //Find out whether the tag sets any style attribute directly. Title and subtitle text don't count since they are read
+        //from the tag on their own, as long as they are plain strings or resource references.
+        int titleIndex = -1;
+        int subtitleIndex = -1;
+        boolean cacheable = true;
+        if (attrs != null) {
+            for (int i = 0, count = attrs.getAttributeCount(); i < count && cacheable; i++) {
+                int name = attrs.getAttributeNameResource(i);
+                if (name == R.attr.titleText) {
+                    titleIndex = i;
+                    cacheable = !isThemeReference(attrs, i);
+                }else if (name == R.attr.subtitleText) {
+                    subtitleIndex = i;
+                    cacheable = !isThemeReference(attrs, i);
+                }else if (isStyleableAttribute(name)) {
+                    cacheable = false;
+                }
+            }
+        }
 
-            float defaultBorderWidth = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, DEFAULT_BORDER_WIDTH_IN_DIP, getResources().getDisplayMetrics());
-            float borderWidth = array.getDimension(R.styleable.DocumentView_borderWidth, defaultBorderWidth);
-            mBorderPaint.setStrokeWidth(borderWidth);
+        DocumentAttributeCache.Entry entry = null;
+        Resources.Theme theme = context.getTheme();
+        if (cacheable && theme != null) {
+            int styleAttr = attrs == null ? 0 : attrs.getStyleAttribute();
+            boolean hasTexts = titleIndex >= 0 || subtitleIndex >= 0;
+            DisplayMetrics metrics = getResources().getDisplayMetrics();
+            entry = DocumentAttributeCache.get(theme, defStyleAttr, defStyleRes, styleAttr, metrics);
+            if (entry == null) {
+                //Without a style on the tag, theme and default styles are resolved without the tag so the texts are left out.
+                AttributeSet resolveAttrs = styleAttr == 0 ? null : attrs;
+                entry = DocumentAttributeCache.resolve(context, resolveAttrs, defStyleAttr, defStyleRes, resolveAttrs == null || !hasTexts);
+                DocumentAttributeCache.put(theme, defStyleAttr, defStyleRes, styleAttr, metrics, entry);
+            }
+            if (!entry.textsResolved && (titleIndex < 0 || subtitleIndex < 0)) {
+                //The texts of theme and styles are unknown, so they have to be resolved for this view.
+                entry = null;
+            }
+        }
 
-            int decorColor = array.getColor(R.styleable.DocumentView_decorColor, DEFAULT_DECOR_COLOR);
-            mDecorPaint.setColor(decorColor);
+        if (entry != null) {
+            mTitle = titleIndex >= 0 ? getText(attrs, titleIndex) : entry.title;
+            mSubtitle = subtitleIndex >= 0 ? getText(attrs, subtitleIndex) : entry.subtitle;
+        }else {
+            entry = DocumentAttributeCache.resolve(context, attrs, defStyleAttr, defStyleRes, false);
+            mTitle = entry.title;
+            mSubtitle = entry.subtitle;
+        }
+        mRenderMode = entry.renderMode;
+        mClipToViewport = entry.clipToViewport;
+        mLayoutQuality = entry.layoutQuality;
+        mMaxTitleLines = entry.maxTitleLines;
+        mMaxSubtitleLines = entry.maxSubtitleLines;
+        mEllipsize = entry.ellipsize;
+        mTitleLayoutCache.setLayoutQuality(mLayoutQuality);
+        mSubtitleLayoutCache.setLayoutQuality(mLayoutQuality);
+        mTitleLayoutCache.setMaxLines(mMaxTitleLines, mEllipsize);
+        mSubtitleLayoutCache.setMaxLines(mMaxSubtitleLines, mEllipsize);
+        applyStyle(entry.style);
+        applyRenderMode();
+    }
 
-            int titleColor = array.getColor(R.styleable.DocumentView_titleColor, DEFAULT_TITLE_COLOR);
-            mTitlePaint.setColor(titleColor);
+    /**
+     * Check whether an attribute belongs to the styleable attributes of this view.
+     * @param name the resource identifier of the attribute name.
+     * @return true if it does.
+     */
+    private static boolean isStyleableAttribute(int name) {
+        for (int attr : R.styleable.DocumentView) {
+            if (attr == name) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            int subtitleColor = array.getColor(R.styleable.DocumentView_subtitleColor, DEFAULT_SUBTITLE_COLOR);
-            mSubtitlePaint.setColor(subtitleColor);
+    /**
+     * Check whether an attribute value refers to a theme attribute, which can only be resolved through the theme.
+     * @param attrs the attributes of the XML tag.
+     * @param index the index of the attribute.
+     * @return true if it does.
+     */
+    private static boolean isThemeReference(AttributeSet attrs, int index) {
+        String value = attrs.getAttributeValue(index);
+        return value != null && value.startsWith("?");
+    }
 
-            float defaultDecorSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, DEFAULT_DECOR_SIZE_IN_DIP, getResources().getDisplayMetrics());
-            mDecorSize = array.getDimension(R.styleable.DocumentView_decorSize, defaultDecorSize);
+    /**
+     * Read a text attribute directly from the XML tag.
+     * @param attrs the attributes of the XML tag.
+     * @param index the index of the attribute.
+     * @return the text, which is empty if there is none.
+     */
+    private CharSequence getText(AttributeSet attrs, int index) {
+        int resId = attrs.getAttributeResourceValue(index, 0);
+        CharSequence text = resId != 0 ? getResources().getText(resId) : attrs.getAttributeValue(index);
+        return text == null ? "" : text;
+    }
 
-            mTitle = array.getText(R.styleable.DocumentView_titleText);
-            mTitle = mTitle == null ? "" : mTitle;
+    /**
+     * Check whether the corner is cut out by clearing it from a hardware layer. Without a layer, a background other than a
+     * color has to be clipped, and path clips are only anti-aliased on a hardware canvas since Pie.
+     * @return true if a layer is required.
+     */
+    private boolean usesLayer() {
+        return mRenderMode == RENDER_MODE_LAYER || clipsBackground() && Build.VERSION.SDK_INT < Build.VERSION_CODES.P;
+    }
 
-            mSubtitle = array.getText(R.styleable.DocumentView_subtitleText);
-            mSubtitle = mSubtitle == null ? "" : mSubtitle;
+    /**
+     * Check whether the background has to be clipped to cut out the corner, since it can't leave the corner out by itself.
+     * @return true if the background has to be clipped.
+     */
+    private boolean clipsBackground() {
+        Drawable background = getBackground();
+        return mDecorSize > 0 && background != null && !(background instanceof DecorColorDrawable);
+    }
 
-            float defaultTextSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, DEFAULT_TEXT_SIZE_IN_SP, getResources().getDisplayMetrics());
-            float titleTextSize = array.getDimension(R.styleable.DocumentView_titleTextSize, defaultTextSize);
-            float subtitleTextSize = array.getDimension(R.styleable.DocumentView_subtitleTextSize, defaultTextSize);
-            mTitlePaint.setTextSize(titleTextSize);
-            mSubtitlePaint.setTextSize(subtitleTextSize);
+    /**
+     * Enable hardware layer for this view only if the render mode requires it.
+     */
+    private void applyRenderMode() {
+        int layerType = usesLayer() ? LAYER_TYPE_HARDWARE : LAYER_TYPE_NONE;
+        if (getLayerType() != layerType) {
+            setLayerType(layerType, null);
+        }
+    }
 
-            array.recycle();
+    /**
+     * Replace a color background with one that leaves out the bottom right corner, so that it doesn't need to be clipped.
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setBackgroundDrawable(Drawable background) {
+        if (background instanceof ColorDrawable && !(background instanceof DecorColorDrawable)) {
+            DecorColorDrawable decorBackground = new DecorColorDrawable(((ColorDrawable) background).getColor());
+            decorBackground.setDecorSize(mDecorSize);
+            background = decorBackground;
+        }
+        super.setBackgroundDrawable(background);
+        //The view itself is still being constructed when the background attribute is applied.
+        if (mRenderer != null) {
+            applyRenderMode();
         }
     }
 
@@ -196,14 +550,17 @@ public class DocumentView extends View {
      * Therefore, it requires measuring of title and subtitle text on the way. The following steps roughly describes this process.
      *
      * 1. For each title, measure the width required to draw it on a single line and take the largest as the desired content width.
+     * Measuring stops at the width available, since a title that doesn't fit has to wrap anyway.
      *
      * 2. Make sure the total desired width doesn't exceed total width available.
      *
      * 3. Make use of the content space for each title separately so that shorter title doesn't have to take the whole line. If there
      * is no content space available after excluding the padding, then the title width should be 0. Use {@link StaticLayout} for drawing
-     * multi-line title.
+     * multi-line title, or a {@link android.text.BoringLayout} if the title fits on a single line anyway. Both the single line widths and the layouts are kept in a {@link TextLayoutCache}, so repeated measure passes
+     * with unchanged content don't build new layouts.
      *
-     * 4. If a title is to be drawn, add its height to desired content height.
+     * 4. If a title is to be drawn, add its height to desired content height. Titles with a maximum number of lines only lay out
+     * as much text as those lines can show.
      *
      * 5. Make sure the total desired height doesn't exceed total height available.
      *
@@ -216,273 +573,958 @@ public class DocumentView extends View {
      */
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-
-        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
-        int widthSize = MeasureSpec.getSize(widthMeasureSpec);
-        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
-        int heightSize = MeasureSpec.getSize(heightMeasureSpec);
-
-        int paddingLeft = getPaddingLeft();
-        //Take decoration into account so that the titles don't overlap with it. Therefore, consider both right padding
-        //and decoration size and use whichever is larger for right spacing.
-        int paddingRight = Math.max(getPaddingRight(), (int)Math.ceil(mDecorSize));
-        int paddingTop = getPaddingTop();
-        //Take decoration into account so that the titles don't overlap with it. Therefore, consider both bottom padding
-        //and decoration size and use whichever is larger for bottom spacing.
-        int paddingBottom = Math.max(getPaddingBottom(), (int)Math.ceil(mDecorSize));
-
-        int desiredWidth;
-        int desiredHeight = 0;
-        int measuredWidth;
-        int measuredHeight;
-        int desiredTitleTextWidth = 0;
-        int desiredSubtitleTextWidth = 0;
-        int measuredTitleWidth;
-        int measuredSubtitleWidth;
-        int measuredContentWidth;
-
-        //Measure title if its not empty.
-        if (!mTitle.toString().isEmpty()) {
-            desiredTitleTextWidth = (int)Math.ceil(mTitlePaint.measureText(mTitle.toString()));
-        }
-        //Measure subtitle if its not empty.
-        if (!mSubtitle.toString().isEmpty()) {
-            desiredSubtitleTextWidth = (int)Math.ceil(mSubtitlePaint.measureText(mSubtitle.toString()));
-        }
-        //Calculate desired width based on mode.
-        if (widthMode == MeasureSpec.EXACTLY) {
-            desiredWidth = widthSize;
-        }else {
-            desiredWidth = Math.max(desiredTitleTextWidth, desiredSubtitleTextWidth);
-            desiredWidth += paddingLeft + paddingRight;
+        boolean recording = RenderStats.isEnabled();
+        long start = recording ? getRenderStats().beginMeasure() : 0;
+        try {
+            measureContent(widthMeasureSpec, heightMeasureSpec);
+            mLastWidthMeasureSpec = widthMeasureSpec;
+            mLastHeightMeasureSpec = heightMeasureSpec;
+            mHasMeasured = true;
+            mDesiredWidth = mMeasureDesiredWidth;
+            mDesiredHeight = mMeasureDesiredHeight;
+            setMeasuredDimension(mMeasureWidth, mMeasureHeight);
+        }finally {
+            //Close the trace section even if measuring throws, or every later section on this thread is off.
+            if (recording) {
+                mRenderStats.endMeasure(start);
+            }
         }
-        //Make sure the measured width doesn't exceed total width available.
-        measuredWidth = Math.min(widthSize, desiredWidth);
+    }
 
-        //Calculate content width. If the padding is too big for the view to take any content, use 0 as proposed content width.
-        measuredContentWidth = Math.max(measuredWidth - paddingLeft - paddingRight, 0);
+    /**
+     * Do the measuring described in {@link #onMeasure(int, int)} and update the helper layouts, but leave the result in
+     * mMeasureWidth, mMeasureHeight, mMeasureDesiredWidth and mMeasureDesiredHeight instead of committing it. This allows a
+     * setter to find out whether its change affects the measured size at all.
+     * @param widthMeasureSpec horizontal space requirements as imposed by the parent.
+     * @param heightMeasureSpec vertical space requirements as imposed by the parent.
+     */
+    private void measureContent(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mLayoutPrefetcher != null && mStyle != null) {
+            mLayoutPrefetcher.take(mStyle, mTitle, mSubtitle, MeasureSpec.getSize(widthMeasureSpec), mTitleLayoutCache,
+                    mTitlePaint, mSubtitleLayoutCache, mSubtitlePaint);
+        }
+        updateRenderer();
+        mRenderer.measure(widthMeasureSpec, heightMeasureSpec);
+        mMeasureWidth = mRenderer.getMeasuredWidth();
+        mMeasureHeight = mRenderer.getMeasuredHeight();
+        mMeasureDesiredWidth = mRenderer.getDesiredWidth();
+        mMeasureDesiredHeight = mRenderer.getDesiredHeight();
+    }
 
-        //Calculate content width for title, if the title is shorter than proposed content width, use its own text width.
-        measuredTitleWidth = Math.min(measuredContentWidth, desiredTitleTextWidth);
+    /**
+     * Hand the current paints, texts, padding and decoration size over to the renderer. The renderer takes the decoration into
+     * account so that the titles don't overlap with it, using whichever is larger of padding and decoration size for right and
+     * bottom spacing.
+     */
+    private void updateRenderer() {
+        mRenderer.setPaints(mBorderPaint, mDecorPaint, mTitlePaint, mSubtitlePaint, mDecorSize);
+        mRenderer.setText(mTitle, mSubtitle);
+        mRenderer.setPadding(getPaddingLeft(), getPaddingTop(), getPaddingRight(), getPaddingBottom());
+    }
 
-        //Calculate content width for subtitle, if the subtitle is shorter than proposed content width, use its own text width.
-        measuredSubtitleWidth = Math.min(measuredContentWidth, desiredSubtitleTextWidth);
-        //Create helper layouts for drawing text.
-        mTitleLayout = new StaticLayout(mTitle, mTitlePaint, measuredTitleWidth, Layout.Alignment.ALIGN_NORMAL, 1, 0, false);
-        mSubtitleLayout = new StaticLayout(mSubtitle, mSubtitlePaint, measuredSubtitleWidth, Layout.Alignment.ALIGN_NORMAL, 1, 0, false);
+    /**
+     * Rebuild the paths for the current size.
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        updateGeometry();
+    }
 
-        //Calculate desired height based on mode.
-        if (heightMode == MeasureSpec.EXACTLY) {
-            desiredHeight = heightSize;
-        }else {
-            if (!mTitle.toString().isEmpty()) {
-                desiredHeight += mTitleLayout.getHeight();
-            }
-            if (!mSubtitle.toString().isEmpty()) {
-                desiredHeight += mSubtitleLayout.getHeight();
-            }
-            desiredHeight += paddingTop + paddingBottom;
+    /**
+     * Hand the size over to the renderer. The mask, decoration and border paths only depend on the view size, the decoration
+     * size and the border width, so the renderer builds them once whenever one of these changes and replays them on every draw.
+     */
+    private void updateGeometry() {
+        updateRenderer();
+        mRenderer.setSize(getWidth(), getHeight());
+        Drawable background = getBackground();
+        if (background instanceof DecorColorDrawable) {
+            ((DecorColorDrawable) background).setDecorSize(mDecorSize);
         }
+        applyRenderMode();
+    }
 
-        //Make sure the measured height doesn't exceed total height available.
-        measuredHeight = Math.min(heightSize, desiredHeight);
-
-        setMeasuredDimension(measuredWidth, measuredHeight);
+    /**
+     * Clip out the bottom right corner before anything, including the background, is drawn unless the background leaves it
+     * out by itself or a layer is used for it.
+     * {@inheritDoc}
+     */
+    @Override
+    public void draw(Canvas canvas) {
+        if (usesLayer() || !clipsBackground()) {
+            super.draw(canvas);
+            return;
+        }
+        int saveCount = canvas.save();
+        canvas.clipPath(mRenderer.getDecorMaskPath(), Region.Op.DIFFERENCE);
+        super.draw(canvas);
+        canvas.restoreToCount(saveCount);
     }
 
     /**
-     * Draw this view in the following steps.
+     * Draw this view in the following steps. All paths are prebuilt by {@link #updateGeometry()} and the text layouts are
+     * obtained while measuring, so drawing doesn't allocate anything.
      *
-     * 1. Mask out the bottom right corner.
+     * 1. Mask out the bottom right corner if a layer is used, otherwise the background has left it out or it has been
+     * clipped out already.
      *
      * 2. Draw decoration.
      *
      * 3. Draw borders.
      *
-     * 4. Draw titles.
+     * 4. Draw titles. On a hardware accelerated canvas the whole view is recorded no matter how much of it is visible, so
+     * unless disabled by {@link #setClipToViewport(boolean)}, the text is clipped to the visible part of the view and some
+     * margin around it. The layouts then only draw the lines within.
+     *
+     * While {@link RenderStats} is enabled, the drawing is timed and traced.
      *
      * @param canvas the canvas on which the background will be drawn.
      */
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        if (RenderStats.isEnabled()) {
+            RenderStats stats = getRenderStats();
+            long start = stats.beginDraw();
+            try {
+                drawContent(canvas);
+            }finally {
+                stats.endDraw(start);
+            }
+        }else {
+            drawContent(canvas);
+        }
+    }
 
-        int width = canvas.getWidth();
-        int height = canvas.getHeight();
-        float borderRadius = mBorderPaint.getStrokeWidth() / 2;
+    /**
+     * Do the drawing described in {@link #onDraw(Canvas)}.
+     * @param canvas the canvas on which the background will be drawn.
+     */
+    private void drawContent(Canvas canvas) {
+        updateRenderer();
 
         //Crop out the bottom right corner.
-        mDecorMaskPath.rewind();
-        mDecorMaskPath.moveTo(width, height);
-        mDecorMaskPath.lineTo(width - mDecorSize, height);
-        mDecorMaskPath.lineTo(width, height - mDecorSize);
-        mDecorMaskPath.close();
-        canvas.drawPath(mDecorMaskPath, mDecorMaskPaint);
-
-        //Draw the triangle decoration.
-        mDecorPath.rewind();
-        mDecorPath.moveTo(width - mDecorSize, height - mDecorSize);
-        mDecorPath.lineTo(width, height - mDecorSize);
-        mDecorPath.lineTo(width - mDecorSize, height);
-        mDecorPath.close();
-        canvas.drawPath(mDecorPath, mDecorPaint);
-
-        //Draw borders.
-        mBorderPath.rewind();
-        mBorderPath.moveTo(width - mDecorSize, height - borderRadius);
-        mBorderPath.lineTo(borderRadius, height - borderRadius);
-        mBorderPath.lineTo(borderRadius, borderRadius);
-        mBorderPath.lineTo(width - borderRadius, borderRadius);
-        mBorderPath.lineTo(width - borderRadius, height - mDecorSize);
-        mBorderPath.lineTo(width - mDecorSize, height - borderRadius);
-        mBorderPath.lineTo(width - mDecorSize, height - mDecorSize);
-        mBorderPath.lineTo(width - borderRadius, height - mDecorSize);
-        canvas.drawPath(mBorderPath, mBorderPaint);
-
-        int paddingLeft = getPaddingLeft();
-        int paddingRight = Math.max(getPaddingRight(), (int)Math.ceil(mDecorSize));
-        int paddingTop = getPaddingTop();
-        int paddingBottom = Math.max(getPaddingBottom(), (int)Math.ceil(mDecorSize));
-        int titleWidth = mTitleLayout.getWidth();
-        int titleHeight = mTitleLayout.getHeight();
-        int subtitleWidth = mSubtitleLayout.getWidth();
-        int subtitleHeight = mSubtitleLayout.getHeight();
-        int totalWidth = width - paddingLeft - paddingRight;
-        int totalHeight = height - paddingTop - paddingBottom;
-        int contentWidth = 0;
-        int contentHeight = 0;
-
-        //Calculate the total content height by adding up the height of each title if it is to be drawn.
-        if (titleWidth > 0) {
-            contentWidth = Math.max(contentWidth, titleWidth);
-            contentHeight += titleHeight;
-        }
-        if (subtitleWidth > 0) {
-            contentWidth = Math.max(contentWidth, subtitleWidth);
-            contentHeight += subtitleHeight;
-        }
-
-        //Discard if not enough content space
-        if (contentHeight > totalHeight) {
+        if (usesLayer()) {
+            canvas.drawPath(mRenderer.getDecorMaskPath(), sDecorMaskPaint);
+        }
+
+        //Draw the rendered document if there is one.
+        if (mSnapshotCache != null && drawSnapshot(canvas)) {
             return;
         }
 
-        //Save the canvas before coordination translation.
-        canvas.save();
-        //Move the coordinate to the beginning place of the title.
-        canvas.translate(paddingLeft + (totalWidth - contentWidth) / 2, paddingTop + (totalHeight - contentHeight) / 2);
-        //Draw title if available. Move the coordinate to the beginning of subtitle afterwards.
-        if (titleWidth > 0 ) {
-            mTitleLayout.draw(canvas);
-            canvas.translate(0, titleHeight);
+        //Draw decoration, borders and titles. Leave out the text far from the visible part of the view.
+        if (mClipToViewport && canvas.isHardwareAccelerated() && mViewportTracker.getDrawRect(mDrawRect)) {
+            mRenderer.draw(canvas, mDrawRect);
+        }else {
+            mRenderer.draw(canvas, null);
+        }
+    }
+
+    /**
+     * Draw the document from the snapshot cache, rendering and adding it first if it isn't cached. Only documents that look
+     * exactly like their style and have plain string texts are cached, others are drawn as usual.
+     * @param canvas the canvas on which the background will be drawn.
+     * @return true if the document has been drawn, false if it has to be drawn as usual.
+     */
+    private boolean drawSnapshot(Canvas canvas) {
+        int width = getWidth();
+        int height = getHeight();
+        if (mStyle == null || !(mTitle instanceof String) || !(mSubtitle instanceof String) || width <= 0 || height <= 0) {
+            return false;
         }
-        //Draw subtitle if available.
-        if (subtitleWidth > 0) {
-            mSubtitleLayout.draw(canvas);
+        if (mSnapshotKey == null) {
+            mSnapshotKey = new DocumentSnapshotCache.Key();
         }
-        //Restore coordinate system.
-        canvas.restore();
+        mSnapshotKey.set(mStyle, (String) mTitle, (String) mSubtitle, width, height, getPaddingLeft(), getPaddingTop(),
+                getPaddingRight(), getPaddingBottom(), mLayoutQuality, mMaxTitleLines, mMaxSubtitleLines, mEllipsize);
+        Bitmap snapshot = mSnapshotCache.get(mSnapshotKey);
+        if (snapshot == null) {
+            snapshot = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mRenderer.draw(new Canvas(snapshot), null);
+            if (!mSnapshotCache.put(mSnapshotKey, snapshot)) {
+                //Too large to be cached, so don't render it again on every draw.
+                snapshot.recycle();
+                return false;
+            }
+        }else {
+            //Remember where the texts go as if they had been drawn.
+            mRenderer.placeText();
+        }
+        canvas.drawBitmap(snapshot, 0, 0, null);
+        return true;
     }
 
     /**
-     * Set the border color.
-     * @param borderColor the border color to be set.
+     * Turn snapshot mode on or off. In snapshot mode, the document is rendered into a bitmap once and kept in the given cache,
+     * and later draws of this view or any other view showing the same document at the same size draw the bitmap instead. This
+     * suits documents that don't change after they are bound, especially in scrolling lists. The background is drawn as usual.
+     *
+     * Only documents that look exactly like their {@link DocumentStyle} and have plain string texts are cached. While the view
+     * is changed through its own setters or a style transition, or shows styled or editable text, it is drawn as usual.
+     * @param snapshotCache the cache to keep the rendered documents in, for example {@link DocumentSnapshotCache#getDefault()},
+     *                      or null to turn snapshot mode off.
      */
-    public void setBorderColor(int borderColor) {
-        mBorderPaint.setColor(borderColor);
-        invalidate();
+    public void setSnapshotCache(DocumentSnapshotCache snapshotCache) {
+        if (mSnapshotCache != snapshotCache) {
+            mSnapshotCache = snapshotCache;
+            invalidateContent();
+        }
     }
 
     /**
-     * Set the border width.
-     * @param borderWidth the border width in pixel.
+     * @return the cache the rendered documents are kept in, null if snapshot mode is off.
      */
-    public void setBorderWidth(float borderWidth) {
-        mBorderPaint.setStrokeWidth(borderWidth);
-        invalidate();
+    public DocumentSnapshotCache getSnapshotCache() {
+        return mSnapshotCache;
     }
 
     /**
-     * Set the decoration color.
-     * @param decorColor the decoration color to be set.
+     * Take over text layouts built ahead of time by a prefetcher when this view is measured, see
+     * {@link DocumentLayoutPrefetcher}. Only used while the view looks exactly like its {@link DocumentStyle}.
+     * @param layoutPrefetcher the prefetcher, for example one shared by all views of a list, or null for none.
      */
-    public void setDecorColor(int decorColor) {
-        mDecorPaint.setColor(decorColor);
-        invalidate();
+    public void setLayoutPrefetcher(DocumentLayoutPrefetcher layoutPrefetcher) {
+        mLayoutPrefetcher = layoutPrefetcher;
     }
 
     /**
-     * Set the decoration size.
-     * @param decorSize the decoration size to be set.
+     * @return the prefetcher whose layouts are taken over when this view is measured, null if none.
      */
-    public void setDecorSize(float decorSize) {
-        mDecorSize = decorSize;
-        invalidate();
+    public DocumentLayoutPrefetcher getLayoutPrefetcher() {
+        return mLayoutPrefetcher;
     }
 
     /**
-     * Set the title text color.
-     * @param titleTextColor the title text color to be set.
+     * Get the instrumentation numbers of this view. They are only recorded while {@link RenderStats#isEnabled()}.
+     * @return the instrumentation numbers.
      */
-    public void setTitleColor(int titleTextColor) {
-        mTitlePaint.setColor(titleTextColor);
-        invalidate();
+    public RenderStats getRenderStats() {
+        if (mRenderStats == null) {
+            mRenderStats = new RenderStats();
+            mRenderer.setRenderStats(mRenderStats);
+        }
+        return mRenderStats;
     }
 
     /**
-     * Set the title text size.
-     * @param titleTextSize the title text size to be set.
+     * Start an edit transaction. All changes made through the returned {@link Editor} are applied together by
+     * {@link Editor#apply()}, which rebuilds the paths at most once and then issues a single invalidation or layout request
+     * depending on what has changed.
+     * @return the editor to collect the changes in.
      */
-    public void setTitleSize(float titleTextSize) {
-        mTitlePaint.setTextSize(titleTextSize);
-        requestLayout();
+    public Editor edit() {
+        return new Editor();
     }
 
     /**
-     * Set the title text.
-     * @param titleText the title text to be set.
+     * Defer invalidation and layout requests until the matching {@link #endBatch()}.
      */
-    public void setTitle(CharSequence titleText) {
-        mTitle = titleText == null ? "" : titleText;
-        requestLayout();
+    private void beginBatch() {
+        mBatchDepth++;
     }
 
     /**
-     * Set the subtitle text color.
-     * @param subtitleTextColor the subtitle text color to be set.
+     * End deferring invalidation and layout requests. When the outermost batch ends, the paths are rebuilt if needed and all
+     * deferred requests are issued at once.
      */
-    public void setSubtitleColor(int subtitleTextColor) {
-        mSubtitlePaint.setColor(subtitleTextColor);
-        invalidate();
+    private void endBatch() {
+        if (--mBatchDepth > 0) {
+            return;
+        }
+        if (mPendingGeometry) {
+            updateGeometry();
+        }
+        if (mPendingLayout && needsLayout()) {
+            requestLayout();
+            invalidate();
+        }else if (mPendingLayout || mPendingInvalidate || mPendingGeometry) {
+            invalidate();
+        }else if (!mPendingDirty.isEmpty()) {
+            invalidate(mPendingDirty);
+        }
+        mPendingGeometry = false;
+        mPendingLayout = false;
+        mPendingInvalidate = false;
+        mPendingDirty.setEmpty();
     }
 
     /**
-     * Set the subtitle text size.
-     * @param subtitleTextSize the subtitle text size to be set.
+     * Rebuild the paths and redraw the view, or defer both if an edit transaction is in progress.
      */
-    public void setSubtitleSize(float subtitleTextSize) {
-        mSubtitlePaint.setTextSize(subtitleTextSize);
-        requestLayout();
+    private void invalidateGeometry() {
+        if (mBatchDepth > 0) {
+            mPendingGeometry = true;
+            return;
+        }
+        updateGeometry();
+        invalidate();
     }
 
     /**
-     * Set the subtitle text.
-     * @param subtitleText the subtitle text to be set.
+     * Redraw the view, or defer it if an edit transaction is in progress.
      */
-    public void setSubtitle(CharSequence subtitleText) {
-        mSubtitle = subtitleText == null ? "" : subtitleText;
-        requestLayout();
+    private void invalidateContent() {
+        if (mBatchDepth > 0) {
+            mPendingInvalidate = true;
+            return;
+        }
+        invalidate();
     }
 
     /**
-     * Save custom attributes during configuration change.
-     * @return the saved state.
+     * Redraw the given area of the view, or defer it if an edit transaction is in progress. This is used for color changes so
+     * that only the pixels that change are redrawn. Hardware accelerated rendering redraws the whole view since Lollipop anyway,
+     * but a software canvas or layer then only redraws the area.
+     * @param dirty the area to be redrawn, nothing is redrawn if it is empty.
      */
-    @Nullable
-    @Override
-    protected Parcelable onSaveInstanceState() {
-        Parcelable superState = super.onSaveInstanceState();
-        SavedState savedState = new SavedState(superState);
+    private void invalidateContent(Rect dirty) {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        if (mBatchDepth > 0) {
+            mPendingDirty.union(dirty);
+            return;
+        }
+        invalidate(dirty);
+    }
+
+    /**
+     * Get the bounds of the triangle decoration.
+     * @param out the rect to receive the bounds, which is empty if there is no decoration.
+     * @return the given rect.
+     */
+    private Rect getDecorBounds(Rect out) {
+        if (mDecorSize <= 0) {
+            out.setEmpty();
+        }else {
+            int width = getWidth();
+            int height = getHeight();
+            int decorSize = (int) Math.ceil(mDecorSize);
+            out.set(width - decorSize, height - decorSize, width, height);
+        }
+        return out;
+    }
+
+    /**
+     * Request a layout pass after a change that may affect the measured size, or defer it if an edit transaction is in progress.
+     * If the size turns out to be unaffected, only redraw the view with the updated text layouts.
+     */
+    private void requestContentLayout() {
+        if (mBatchDepth > 0) {
+            mPendingLayout = true;
+            return;
+        }
+        if (needsLayout()) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    /**
+     * Check whether the current content requires a new layout pass. The content is measured again against the requirements of
+     * the last measure pass, assuming the parent would impose the same ones. A layout pass is required if the measured size
+     * changes. Unless the size is fixed by the layout params, it is also required if the desired size changes, since the
+     * parent may base its requirements on it. As a side effect, the helper layouts are brought up to date.
+     * @return true if a layout pass is required.
+     */
+    private boolean needsLayout() {
+        if (!mHasMeasured || isLayoutRequested()) {
+            return true;
+        }
+        measureContent(mLastWidthMeasureSpec, mLastHeightMeasureSpec);
+        if (mMeasureWidth != getMeasuredWidth() || mMeasureHeight != getMeasuredHeight()) {
+            return true;
+        }
+        ViewGroup.LayoutParams params = getLayoutParams();
+        boolean fixedSize = params != null && params.width != ViewGroup.LayoutParams.WRAP_CONTENT
+                && params.height != ViewGroup.LayoutParams.WRAP_CONTENT;
+        return !fixedSize && (mMeasureDesiredWidth != mDesiredWidth || mMeasureDesiredHeight != mDesiredHeight);
+    }
+
+    /**
+     * Set the way the bottom right corner is cut out.
+     * @param renderMode either {@link #RENDER_MODE_CLIP} or {@link #RENDER_MODE_LAYER}.
+     */
+    public void setRenderMode(int renderMode) {
+        mRenderMode = renderMode;
+        applyRenderMode();
+        invalidateContent();
+    }
+
+    /**
+     * Get the way the bottom right corner is cut out.
+     * @return either {@link #RENDER_MODE_CLIP} or {@link #RENDER_MODE_LAYER}.
+     */
+    public int getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * Set the style of this view. The view uses the paints shared by the style, replacing any change made through its own
+     * setters. Those setters in turn give the view its own copy of the affected paint, leaving the style untouched.
+     * @param style the style to be set.
+     */
+    public void setStyle(DocumentStyle style) {
+        if (mStyleTransition != null) {
+            mStyleTransition.cancel();
+        }
+        if (style == mStyle) {
+            return;
+        }
+        beginBatch();
+        try {
+            applyStyle(style);
+            invalidateGeometry();
+            requestContentLayout();
+        }finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Animate from the current style to the given one. Colors, border width and decoration size are interpolated on a single
+     * reused animator and written straight into the paints, so no frame allocates or boxes anything. Colors and border width
+     * only redraw the view. The decoration size and text sizes request a layout pass only on frames where the measured size
+     * changes, though text sizes lay out the text again on every frame.
+     *
+     * Once finished, the view uses the given style, sharing its paints. Starting another transition or setting a style
+     * cancels the running one where it is. Changes made through other setters in the meantime are overwritten.
+     *
+     * @param style the style to animate to.
+     * @param duration the duration of the transition in milliseconds. The style is set right away if it isn't positive.
+     */
+    public void animateTo(DocumentStyle style, long duration) {
+        DocumentStyle from = getStyle();
+        if (mStyleTransition != null) {
+            mStyleTransition.cancel();
+        }
+        if (duration <= 0 || from.equals(style)) {
+            setStyle(style);
+            return;
+        }
+        //The transition writes into the paints, so take over those that change.
+        int paints = 0;
+        if (from.getBorderColor() != style.getBorderColor() || from.getBorderWidth() != style.getBorderWidth()) {
+            paints |= PAINT_BORDER;
+        }
+        if (from.getDecorColor() != style.getDecorColor()) {
+            paints |= PAINT_DECOR;
+        }
+        if (from.getTitleColor() != style.getTitleColor() || from.getTitleSize() != style.getTitleSize()) {
+            paints |= PAINT_TITLE;
+        }
+        if (from.getSubtitleColor() != style.getSubtitleColor() || from.getSubtitleSize() != style.getSubtitleSize()) {
+            paints |= PAINT_SUBTITLE;
+        }
+        mutatePaints(paints);
+        if (mStyleTransition == null) {
+            mStyleTransition = new StyleTransition();
+        }
+        mStyleTransition.start(from, style, duration);
+    }
+
+    /**
+     * Apply the interpolated values of a transition frame, touching only what differs between the two styles.
+     * @param from the style the transition starts at.
+     * @param to the style the transition ends at.
+     * @param fraction the progress of the transition.
+     */
+    private void applyTransitionFrame(DocumentStyle from, DocumentStyle to, float fraction) {
+        //Every frame looks different from the style that may have been taken from the previous one.
+        mStyle = null;
+        beginBatch();
+        try {
+            if (from.getBorderColor() != to.getBorderColor()) {
+                mBorderPaint.setColor(blendColor(from.getBorderColor(), to.getBorderColor(), fraction));
+                invalidateContent();
+            }
+            if (from.getBorderWidth() != to.getBorderWidth()) {
+                mBorderPaint.setStrokeWidth(blend(from.getBorderWidth(), to.getBorderWidth(), fraction));
+                invalidateGeometry();
+            }
+            if (from.getDecorColor() != to.getDecorColor()) {
+                mDecorPaint.setColor(blendColor(from.getDecorColor(), to.getDecorColor(), fraction));
+                invalidateContent(getDecorBounds(mDirtyRect));
+            }
+            if (from.getDecorSize() != to.getDecorSize()) {
+                mDecorSize = blend(from.getDecorSize(), to.getDecorSize(), fraction);
+                invalidateGeometry();
+                requestContentLayout();
+            }
+            if (from.getTitleColor() != to.getTitleColor()) {
+                mTitlePaint.setColor(blendColor(from.getTitleColor(), to.getTitleColor(), fraction));
+                invalidateContent(mTitleBounds);
+            }
+            if (from.getTitleSize() != to.getTitleSize()) {
+                mTitlePaint.setTextSize(blend(from.getTitleSize(), to.getTitleSize(), fraction));
+                requestContentLayout();
+            }
+            if (from.getSubtitleColor() != to.getSubtitleColor()) {
+                mSubtitlePaint.setColor(blendColor(from.getSubtitleColor(), to.getSubtitleColor(), fraction));
+                invalidateContent(mSubtitleBounds);
+            }
+            if (from.getSubtitleSize() != to.getSubtitleSize()) {
+                mSubtitlePaint.setTextSize(blend(from.getSubtitleSize(), to.getSubtitleSize(), fraction));
+                requestContentLayout();
+            }
+        }finally {
+            endBatch();
+        }
+    }
+
+    /**
+     * Interpolate between two values.
+     * @param from the value at fraction 0.
+     * @param to the value at fraction 1.
+     * @param fraction the progress between both values.
+     * @return the interpolated value.
+     */
+    private static float blend(float from, float to, float fraction) {
+        return from + (to - from) * fraction;
+    }
+
+    /**
+     * Interpolate between two colors by each ARGB channel, the same way {@link android.animation.ArgbEvaluator} does without
+     * boxing the result.
+     * @param from the color at fraction 0.
+     * @param to the color at fraction 1.
+     * @param fraction the progress between both colors.
+     * @return the interpolated color.
+     */
+    private static int blendColor(int from, int to, float fraction) {
+        int a = (from >>> 24) + (int) (((to >>> 24) - (from >>> 24)) * fraction);
+        int r = ((from >> 16) & 0xFF) + (int) ((((to >> 16) & 0xFF) - ((from >> 16) & 0xFF)) * fraction);
+        int g = ((from >> 8) & 0xFF) + (int) ((((to >> 8) & 0xFF) - ((from >> 8) & 0xFF)) * fraction);
+        int b = (from & 0xFF) + (int) (((to & 0xFF) - (from & 0xFF)) * fraction);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Get the current style of this view, including any change made through its own setters.
+     * @return the current style.
+     */
+    public DocumentStyle getStyle() {
+        if (mStyle == null) {
+            mStyle = new DocumentStyle.Builder()
+                    .setBorderColor(mBorderPaint.getColor())
+                    .setBorderWidth(mBorderPaint.getStrokeWidth())
+                    .setDecorColor(mDecorPaint.getColor())
+                    .setDecorSize(mDecorSize)
+                    .setTitleColor(mTitlePaint.getColor())
+                    .setTitleSize(mTitlePaint.getTextSize())
+                    .setSubtitleColor(mSubtitlePaint.getColor())
+                    .setSubtitleSize(mSubtitlePaint.getTextSize())
+                    .build();
+        }
+        return mStyle;
+    }
+
+    /**
+     * Bind this view to a shared style. The current style of the shared style is applied right away, and every later change
+     * of it is applied while the view is attached. Changes made while the view is detached are applied once it is attached
+     * again.
+     * @param sharedStyle the shared style to bind to, or null to unbind.
+     */
+    public void setSharedStyle(SharedDocumentStyle sharedStyle) {
+        if (mSharedStyle != null) {
+            mSharedStyle.unregister(this);
+        }
+        mSharedStyle = sharedStyle;
+        mAppliedSharedStyle = null;
+        if (sharedStyle != null) {
+            if (mAttached) {
+                sharedStyle.register(this);
+            }
+            applySharedStyle();
+        }
+    }
+
+    /**
+     * Apply the current style of the shared style unless it has been applied already.
+     */
+    private void applySharedStyle() {
+        DocumentStyle style = mSharedStyle.get();
+        if (style != mAppliedSharedStyle) {
+            mAppliedSharedStyle = style;
+            setStyle(style);
+        }
+    }
+
+    /**
+     * Take the paints and the decoration size from the given style without invalidating anything.
+     * @param style the style to be applied.
+     */
+    private void applyStyle(DocumentStyle style) {
+        mStyle = style;
+        mBorderPaint = style.getBorderPaint();
+        mDecorPaint = style.getDecorPaint();
+        mTitlePaint = style.getTitlePaint();
+        mSubtitlePaint = style.getSubtitlePaint();
+        mDecorSize = style.getDecorSize();
+        mOwnedPaints = 0;
+    }
+
+    /**
+     * Make sure the given paints are owned by this view before they are modified, copying the ones still shared with the
+     * style. Since the view diverges from its style, the style is dropped.
+     * @param paints a combination of the PAINT_* flags.
+     */
+    private void mutatePaints(int paints) {
+        mStyle = null;
+        int shared = paints & ~mOwnedPaints;
+        if ((shared & PAINT_BORDER) != 0) {
+            mBorderPaint = new Paint(mBorderPaint);
+        }
+        if ((shared & PAINT_DECOR) != 0) {
+            mDecorPaint = new Paint(mDecorPaint);
+        }
+        if ((shared & PAINT_TITLE) != 0) {
+            mTitlePaint = new TextPaint(mTitlePaint);
+        }
+        if ((shared & PAINT_SUBTITLE) != 0) {
+            mSubtitlePaint = new TextPaint(mSubtitlePaint);
+        }
+        mOwnedPaints |= paints;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        if (mClipToViewport) {
+            mViewportTracker.attach();
+        }
+        if (mSharedStyle != null) {
+            mSharedStyle.register(this);
+            applySharedStyle();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mAttached = false;
+        mViewportTracker.detach();
+        //Don't keep animating a view that isn't shown.
+        if (mStyleTransition != null) {
+            mStyleTransition.finish();
+        }
+        if (mSharedStyle != null) {
+            mSharedStyle.unregister(this);
+        }
+    }
+
+    /**
+     * Set the line breaking quality of title and subtitle. A lower quality makes measuring text that wraps much cheaper.
+     * @param layoutQuality one of {@link #LAYOUT_QUALITY_FAST}, {@link #LAYOUT_QUALITY_BALANCED} or {@link #LAYOUT_QUALITY_HIGH}.
+     */
+    public void setLayoutQuality(int layoutQuality) {
+        if (mLayoutQuality == layoutQuality) {
+            return;
+        }
+        mLayoutQuality = layoutQuality;
+        mTitleLayoutCache.setLayoutQuality(layoutQuality);
+        mSubtitleLayoutCache.setLayoutQuality(layoutQuality);
+        requestContentLayout();
+    }
+
+    /**
+     * Get the line breaking quality of title and subtitle.
+     * @return one of {@link #LAYOUT_QUALITY_FAST}, {@link #LAYOUT_QUALITY_BALANCED} or {@link #LAYOUT_QUALITY_HIGH}.
+     */
+    public int getLayoutQuality() {
+        return mLayoutQuality;
+    }
+
+    /**
+     * Set whether only the text around the visible part of the view is drawn while hardware accelerated. This keeps the
+     * drawing cost of a tall view inside a scrolling container proportional to what is visible. The view redraws when
+     * more of it comes into view, whether by scrolling or by other means such as animating its translation. While none of
+     * it is visible, all of the text is drawn.
+     * @param clipToViewport true to draw the visible text only.
+     */
+    public void setClipToViewport(boolean clipToViewport) {
+        if (mClipToViewport == clipToViewport) {
+            return;
+        }
+        mClipToViewport = clipToViewport;
+        if (!clipToViewport) {
+            mViewportTracker.detach();
+        }else if (mAttached) {
+            mViewportTracker.attach();
+        }
+        invalidateContent();
+    }
+
+    /**
+     * Get whether only the text around the visible part of the view is drawn while hardware accelerated.
+     * @return true if the visible text is drawn only.
+     */
+    public boolean getClipToViewport() {
+        return mClipToViewport;
+    }
+
+    /**
+     * Set the maximum number of lines of the title. Only as much of the title as fits on these lines is laid out.
+     * @param maxLines the maximum number of lines, or Integer.MAX_VALUE for no limit.
+     */
+    public void setMaxTitleLines(int maxLines) {
+        if (mMaxTitleLines == maxLines) {
+            return;
+        }
+        mMaxTitleLines = maxLines;
+        mTitleLayoutCache.setMaxLines(maxLines, mEllipsize);
+        requestContentLayout();
+    }
+
+    /**
+     * Get the maximum number of lines of the title.
+     * @return the maximum number of lines, or Integer.MAX_VALUE if there is no limit.
+     */
+    public int getMaxTitleLines() {
+        return mMaxTitleLines;
+    }
+
+    /**
+     * Set the maximum number of lines of the subtitle. Only as much of the subtitle as fits on these lines is laid out.
+     * @param maxLines the maximum number of lines, or Integer.MAX_VALUE for no limit.
+     */
+    public void setMaxSubtitleLines(int maxLines) {
+        if (mMaxSubtitleLines == maxLines) {
+            return;
+        }
+        mMaxSubtitleLines = maxLines;
+        mSubtitleLayoutCache.setMaxLines(maxLines, mEllipsize);
+        requestContentLayout();
+    }
+
+    /**
+     * Get the maximum number of lines of the subtitle.
+     * @return the maximum number of lines, or Integer.MAX_VALUE if there is no limit.
+     */
+    public int getMaxSubtitleLines() {
+        return mMaxSubtitleLines;
+    }
+
+    /**
+     * Set where title and subtitle are ellipsized if they have more lines than allowed. Ellipsizing is only supported since
+     * Marshmallow, older platforms cut the text off after the last line.
+     * @param ellipsize where to ellipsize, or null to cut the text off.
+     */
+    public void setEllipsize(TextUtils.TruncateAt ellipsize) {
+        if (mEllipsize == ellipsize) {
+            return;
+        }
+        mEllipsize = ellipsize;
+        mTitleLayoutCache.setMaxLines(mMaxTitleLines, ellipsize);
+        mSubtitleLayoutCache.setMaxLines(mMaxSubtitleLines, ellipsize);
+        requestContentLayout();
+    }
+
+    /**
+     * Get where title and subtitle are ellipsized if they have more lines than allowed.
+     * @return where to ellipsize, or null if the text is cut off.
+     */
+    public TextUtils.TruncateAt getEllipsize() {
+        return mEllipsize;
+    }
+
+    /**
+     * Set the border color.
+     * @param borderColor the border color to be set.
+     */
+    public void setBorderColor(int borderColor) {
+        mutatePaints(PAINT_BORDER);
+        mBorderPaint.setColor(borderColor);
+        //The border runs along all edges, so its bounds are the whole view.
+        invalidateContent();
+    }
+
+    /**
+     * Set the border width.
+     * @param borderWidth the border width in pixel.
+     */
+    public void setBorderWidth(float borderWidth) {
+        mutatePaints(PAINT_BORDER);
+        mBorderPaint.setStrokeWidth(borderWidth);
+        invalidateGeometry();
+    }
+
+    /**
+     * Set the decoration color. Only the decoration is redrawn.
+     * @param decorColor the decoration color to be set.
+     */
+    public void setDecorColor(int decorColor) {
+        mutatePaints(PAINT_DECOR);
+        mDecorPaint.setColor(decorColor);
+        invalidateContent(getDecorBounds(mDirtyRect));
+    }
+
+    /**
+     * Set the decoration size.
+     * @param decorSize the decoration size to be set.
+     */
+    public void setDecorSize(float decorSize) {
+        mStyle = null;
+        mDecorSize = decorSize;
+        invalidateGeometry();
+        //The decoration size takes part in the padding used for measuring.
+        requestContentLayout();
+    }
+
+    /**
+     * Set the title text color. Only the title is redrawn.
+     * @param titleTextColor the title text color to be set.
+     */
+    public void setTitleColor(int titleTextColor) {
+        mutatePaints(PAINT_TITLE);
+        mTitlePaint.setColor(titleTextColor);
+        invalidateContent(mTitleBounds);
+    }
+
+    /**
+     * Set the title text size.
+     * @param titleTextSize the title text size to be set.
+     */
+    public void setTitleSize(float titleTextSize) {
+        mutatePaints(PAINT_TITLE);
+        mTitlePaint.setTextSize(titleTextSize);
+        requestContentLayout();
+    }
+
+    /**
+     * Set the title text. Text other than a String is laid out again even if the same object is set again.
+     * @param titleText the title text to be set.
+     */
+    public void setTitle(CharSequence titleText) {
+        mTitle = titleText == null ? "" : titleText;
+        mTextGeneration++;
+        //A mutable text may have been changed since it was set, even if it is set again as the same object.
+        if (!(mTitle instanceof String)) {
+            mTitleLayoutCache.onTextChanged();
+        }
+        requestContentLayout();
+    }
+
+    /**
+     * Set the subtitle text color. Only the subtitle is redrawn.
+     * @param subtitleTextColor the subtitle text color to be set.
+     */
+    public void setSubtitleColor(int subtitleTextColor) {
+        mutatePaints(PAINT_SUBTITLE);
+        mSubtitlePaint.setColor(subtitleTextColor);
+        invalidateContent(mSubtitleBounds);
+    }
+
+    /**
+     * Set the subtitle text size.
+     * @param subtitleTextSize the subtitle text size to be set.
+     */
+    public void setSubtitleSize(float subtitleTextSize) {
+        mutatePaints(PAINT_SUBTITLE);
+        mSubtitlePaint.setTextSize(subtitleTextSize);
+        requestContentLayout();
+    }
+
+    /**
+     * Set the subtitle text. Text other than a String is laid out again even if the same object is set again.
+     * @param subtitleText the subtitle text to be set.
+     */
+    public void setSubtitle(CharSequence subtitleText) {
+        mSubtitle = subtitleText == null ? "" : subtitleText;
+        mTextGeneration++;
+        //A mutable text may have been changed since it was set, even if it is set again as the same object.
+        if (!(mSubtitle instanceof String)) {
+            mSubtitleLayoutCache.onTextChanged();
+        }
+        requestContentLayout();
+    }
+
+    /**
+     * Get the subtitle as editable text, which the view keeps following as it is edited. On first use, or after the subtitle has
+     * been replaced, the current subtitle is copied into a new editable that becomes the subtitle. Edits only reflow the
+     * paragraphs they touch, so updating a long subtitle piece by piece doesn't lay out the whole text again. That is unless
+     * the subtitle lines are limited, in which case only the visible lines are laid out anyway.
+     * @return the editable subtitle.
+     */
+    public Editable getEditableSubtitle() {
+        if (mEditableSubtitle == null || mSubtitle != mEditableSubtitle) {
+            if (mEditableSubtitle != null) {
+                mEditableSubtitle.removeSpan(mSubtitleWatcher);
+            }
+            mEditableSubtitle = new SpannableStringBuilder(mSubtitle);
+            mEditableSubtitle.setSpan(mSubtitleWatcher, 0, mEditableSubtitle.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+            setSubtitle(mEditableSubtitle);
+        }
+        return mEditableSubtitle;
+    }
+
+    /**
+     * Append text to the subtitle, for example when it streams in from a live feed. See {@link #getEditableSubtitle()}.
+     * @param text the text to be appended.
+     */
+    public void appendSubtitle(CharSequence text) {
+        getEditableSubtitle().append(text);
+    }
+
+    /**
+     * Set both title and subtitle text, while measuring and laying them out on a background thread. The layouts are built for
+     * the width of the last measure pass, or for the single line width of the text if the view hasn't been measured yet. Once
+     * they are ready, the texts are set on the UI thread together with the precomputed layouts, followed by a single layout
+     * request. The view keeps showing the previous texts until then.
+     *
+     * If the text size or typeface changes in the meantime, the precomputed layouts are dropped and the texts are laid out
+     * synchronously as usual. The same happens if the executor rejects the task. A later call to this method,
+     * {@link #setTitle(CharSequence)} or {@link #setSubtitle(CharSequence)} discards the pending result.
+     *
+     * @param titleText the title text to be set. It must not be modified afterwards.
+     * @param subtitleText the subtitle text to be set. It must not be modified afterwards.
+     * @param executor the executor to lay out the texts on.
+     */
+    public void setTextAsync(CharSequence titleText, CharSequence subtitleText, Executor executor) {
+        CharSequence title = titleText == null ? "" : titleText;
+        CharSequence subtitle = subtitleText == null ? "" : subtitleText;
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        AsyncTextTask task = new AsyncTextTask(this, ++mTextGeneration, title, subtitle, new TextPaint(mTitlePaint),
+                new TextPaint(mSubtitlePaint), mHasMeasured, mLastWidthMeasureSpec);
+        try {
+            executor.execute(task);
+        }catch (RejectedExecutionException e) {
+            //Fall back to synchronous layout.
+            setTitle(title);
+            setSubtitle(subtitle);
+        }
+    }
+
+    /**
+     * Take over the texts and layouts precomputed by an {@link AsyncTextTask} unless the texts have been changed since.
+     * @param task the finished task.
+     */
+    private void onTextLayoutReady(AsyncTextTask task) {
+        if (task.mGeneration != mTextGeneration) {
+            return;
+        }
+        mTitle = task.mTitle;
+        mSubtitle = task.mSubtitle;
+        mTitleLayoutCache.adopt(task.mTitleLayoutCache, mTitlePaint);
+        mSubtitleLayoutCache.adopt(task.mSubtitleLayoutCache, mSubtitlePaint);
+        requestLayout();
+    }
+
+    /**
+     * Save custom attributes during configuration change.
+     * @return the saved state.
+     */
+    @Nullable
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        Parcelable superState = super.onSaveInstanceState();
+        SavedState savedState = new SavedState(superState);
         savedState.borderColor = mBorderPaint.getColor();
         savedState.borderWidth = mBorderPaint.getStrokeWidth();
         savedState.decorColor = mDecorPaint.getColor();
@@ -504,16 +1546,336 @@ public class DocumentView extends View {
     protected void onRestoreInstanceState(Parcelable state) {
         SavedState savedState = (SavedState) state;
         super.onRestoreInstanceState(savedState.getSuperState());
-        mBorderPaint.setColor(savedState.borderColor);
-        mBorderPaint.setStrokeWidth(savedState.borderWidth);
-        mDecorPaint.setColor(savedState.decorColor);
-        mDecorSize = savedState.decorSize;
-        mTitlePaint.setColor(savedState.titleColor);
-        mTitlePaint.setTextSize(savedState.titleSize);
+        DocumentStyle style = new DocumentStyle.Builder()
+                .setBorderColor(savedState.borderColor)
+                .setBorderWidth(savedState.borderWidth)
+                .setDecorColor(savedState.decorColor)
+                .setDecorSize(savedState.decorSize)
+                .setTitleColor(savedState.titleColor)
+                .setTitleSize(savedState.titleSize)
+                .setSubtitleColor(savedState.subtitleColor)
+                .setSubtitleSize(savedState.subtitleSize)
+                .build();
+        //Keep sharing the current style if nothing has changed.
+        if (!style.equals(getStyle())) {
+            applyStyle(style);
+        }
         mTitle = savedState.title;
-        mSubtitlePaint.setColor(savedState.subtitleColor);
-        mSubtitlePaint.setTextSize(savedState.subtitleSize);
         mSubtitle = savedState.subtitle;
+        updateGeometry();
+    }
+
+    /**
+     * Collects property changes and applies them to the view in a single pass. Obtain one with {@link #edit()}.
+     */
+    public final class Editor {
+
+        private static final int FLAG_BORDER_COLOR = 1;
+        private static final int FLAG_BORDER_WIDTH = 1 << 1;
+        private static final int FLAG_DECOR_COLOR = 1 << 2;
+        private static final int FLAG_DECOR_SIZE = 1 << 3;
+        private static final int FLAG_TITLE_COLOR = 1 << 4;
+        private static final int FLAG_TITLE_SIZE = 1 << 5;
+        private static final int FLAG_TITLE = 1 << 6;
+        private static final int FLAG_SUBTITLE_COLOR = 1 << 7;
+        private static final int FLAG_SUBTITLE_SIZE = 1 << 8;
+        private static final int FLAG_SUBTITLE = 1 << 9;
+
+        //The properties that have been changed
+        private int mFlags;
+
+        private int mBorderColor;
+        private float mBorderWidth;
+        private int mDecorColor;
+        private float mDecorSize;
+        private int mTitleColor;
+        private float mTitleSize;
+        private CharSequence mTitle;
+        private int mSubtitleColor;
+        private float mSubtitleSize;
+        private CharSequence mSubtitle;
+
+        private Editor() {
+        }
+
+        /**
+         * @see DocumentView#setBorderColor(int)
+         */
+        public Editor setBorderColor(int borderColor) {
+            mBorderColor = borderColor;
+            mFlags |= FLAG_BORDER_COLOR;
+            return this;
+        }
+
+        /**
+         * @see DocumentView#setBorderWidth(float)
+         */
+        public Editor setBorderWidth(float borderWidth) {
+            mBorderWidth = borderWidth;
+            mFlags |= FLAG_BORDER_WIDTH;
+            return this;
+        }
+
+        /**
+         * @see DocumentView#setDecorColor(int)
+         */
+        public Editor setDecorColor(int decorColor) {
+            mDecorColor = decorColor;
+            mFlags |= FLAG_DECOR_COLOR;
+            return this;
+        }
+
+        /**
+         * @see DocumentView#setDecorSize(float)
+         */
+        public Editor setDecorSize(float decorSize) {
+            mDecorSize = decorSize;
+            mFlags |= FLAG_DECOR_SIZE;
+            return this;
+        }
+
+        /**
+         * @see DocumentView#setTitleColor(int)
+         */
+        public Editor setTitleColor(int titleTextColor) {
+            mTitleColor = titleTextColor;
+            mFlags |= FLAG_TITLE_COLOR;
+            return this;
+        }
+
+        /**
+         * @see DocumentView#setTitleSize(float)
+         */
+        public Editor setTitleSize(float titleTextSize) {
+            mTitleSize = titleTextSize;
+            mFlags |= FLAG_TITLE_SIZE;
+            return this;
+        }
+
+        /**
+         * @see DocumentView#setTitle(CharSequence)
+         */
+        public Editor setTitle(CharSequence titleText) {
+            mTitle = titleText;
+            mFlags |= FLAG_TITLE;
+            return this;
+        }
+
+        /**
+         * @see DocumentView#setSubtitleColor(int)
+         */
+        public Editor setSubtitleColor(int subtitleTextColor) {
+            mSubtitleColor = subtitleTextColor;
+            mFlags |= FLAG_SUBTITLE_COLOR;
+            return this;
+        }
+
+        /**
+         * @see DocumentView#setSubtitleSize(float)
+         */
+        public Editor setSubtitleSize(float subtitleTextSize) {
+            mSubtitleSize = subtitleTextSize;
+            mFlags |= FLAG_SUBTITLE_SIZE;
+            return this;
+        }
+
+        /**
+         * @see DocumentView#setSubtitle(CharSequence)
+         */
+        public Editor setSubtitle(CharSequence subtitleText) {
+            mSubtitle = subtitleText;
+            mFlags |= FLAG_SUBTITLE;
+            return this;
+        }
+
+        /**
+         * Apply all collected changes to the view. The editor is cleared afterwards and can be reused.
+         */
+        public void apply() {
+            beginBatch();
+            try {
+                if ((mFlags & FLAG_BORDER_COLOR) != 0) {
+                    DocumentView.this.setBorderColor(mBorderColor);
+                }
+                if ((mFlags & FLAG_BORDER_WIDTH) != 0) {
+                    DocumentView.this.setBorderWidth(mBorderWidth);
+                }
+                if ((mFlags & FLAG_DECOR_COLOR) != 0) {
+                    DocumentView.this.setDecorColor(mDecorColor);
+                }
+                if ((mFlags & FLAG_DECOR_SIZE) != 0) {
+                    DocumentView.this.setDecorSize(mDecorSize);
+                }
+                if ((mFlags & FLAG_TITLE_COLOR) != 0) {
+                    DocumentView.this.setTitleColor(mTitleColor);
+                }
+                if ((mFlags & FLAG_TITLE_SIZE) != 0) {
+                    DocumentView.this.setTitleSize(mTitleSize);
+                }
+                if ((mFlags & FLAG_TITLE) != 0) {
+                    DocumentView.this.setTitle(mTitle);
+                }
+                if ((mFlags & FLAG_SUBTITLE_COLOR) != 0) {
+                    DocumentView.this.setSubtitleColor(mSubtitleColor);
+                }
+                if ((mFlags & FLAG_SUBTITLE_SIZE) != 0) {
+                    DocumentView.this.setSubtitleSize(mSubtitleSize);
+                }
+                if ((mFlags & FLAG_SUBTITLE) != 0) {
+                    DocumentView.this.setSubtitle(mSubtitle);
+                }
+                mFlags = 0;
+                mTitle = null;
+                mSubtitle = null;
+            }finally {
+                endBatch();
+            }
+        }
+    }
+
+    /**
+     * Runs the transition started by {@link #animateTo(DocumentStyle, long)} on a single animator that is reused for every
+     * later transition of the view.
+     */
+    private final class StyleTransition extends AnimatorListenerAdapter implements ValueAnimator.AnimatorUpdateListener {
+
+        private final ValueAnimator mAnimator;
+
+        //The styles the running transition goes between, null if there is none
+        private DocumentStyle mFrom;
+        private DocumentStyle mTo;
+
+        //Whether the running transition has been canceled, in which case the target style isn't set at the end
+        private boolean mCanceled;
+
+        private StyleTransition() {
+            mAnimator = ValueAnimator.ofFloat(0, 1);
+            mAnimator.addUpdateListener(this);
+            mAnimator.addListener(this);
+        }
+
+        /**
+         * Start a transition.
+         * @param from the style to start at.
+         * @param to the style to end at.
+         * @param duration the duration in milliseconds.
+         */
+        private void start(DocumentStyle from, DocumentStyle to, long duration) {
+            mFrom = from;
+            mTo = to;
+            mCanceled = false;
+            mAnimator.setDuration(duration);
+            mAnimator.start();
+        }
+
+        /**
+         * Stop the running transition where it is.
+         */
+        private void cancel() {
+            if (mTo != null) {
+                mAnimator.cancel();
+            }
+        }
+
+        /**
+         * Jump to the end of the running transition.
+         */
+        private void finish() {
+            if (mTo != null) {
+                mAnimator.end();
+            }
+        }
+
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            if (mTo != null) {
+                applyTransitionFrame(mFrom, mTo, animation.getAnimatedFraction());
+            }
+        }
+
+        @Override
+        public void onAnimationCancel(Animator animation) {
+            mCanceled = true;
+        }
+
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            DocumentStyle to = mTo;
+            mFrom = null;
+            mTo = null;
+            if (!mCanceled && to != null) {
+                setStyle(to);
+            }
+        }
+    }
+
+    /**
+     * A task that measures and lays out title and subtitle on a background thread the same way {@link #onMeasure(int, int)} does,
+     * and hands the results over to the view on the UI thread. If the view hasn't been measured yet, the texts are laid out at
+     * their single line width.
+     */
+    private static class AsyncTextTask implements Runnable, TextMeasurer {
+
+        private final DocumentView mView;
+        private final int mGeneration;
+        private final CharSequence mTitle;
+        private final CharSequence mSubtitle;
+        private final TextPaint mTitlePaint;
+        private final TextPaint mSubtitlePaint;
+        private final int mWidthMeasureSpec;
+        private final DocumentLayoutEngine mLayoutEngine = new DocumentLayoutEngine();
+        private final TextLayoutCache mTitleLayoutCache = new TextLayoutCache();
+        private final TextLayoutCache mSubtitleLayoutCache = new TextLayoutCache();
+
+        private AsyncTextTask(DocumentView view, int generation, CharSequence title, CharSequence subtitle, TextPaint titlePaint,
+                              TextPaint subtitlePaint, boolean hasMeasured, int widthMeasureSpec) {
+            mView = view;
+            mGeneration = generation;
+            mTitle = title;
+            mSubtitle = subtitle;
+            mTitlePaint = titlePaint;
+            mSubtitlePaint = subtitlePaint;
+            mWidthMeasureSpec = hasMeasured ? widthMeasureSpec
+                    : DocumentLayoutEngine.makeMeasureSpec(DocumentLayoutEngine.MAX_SIZE, DocumentLayoutEngine.MODE_AT_MOST);
+            mLayoutEngine.setPadding(view.getPaddingLeft(), view.getPaddingTop(), view.getPaddingRight(), view.getPaddingBottom());
+            mLayoutEngine.setDecorSize(view.mDecorSize);
+            mTitleLayoutCache.copyConfig(view.mTitleLayoutCache);
+            mSubtitleLayoutCache.copyConfig(view.mSubtitleLayoutCache);
+        }
+
+        @Override
+        public void run() {
+            //Only the width matters for the layouts.
+            mLayoutEngine.measure(mWidthMeasureSpec,
+                    DocumentLayoutEngine.makeMeasureSpec(0, DocumentLayoutEngine.MODE_UNSPECIFIED), this);
+            sMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mView.onTextLayoutReady(AsyncTextTask.this);
+                }
+            });
+        }
+
+        @Override
+        public boolean isEmpty(int text) {
+            return (text == DocumentLayoutEngine.TEXT_TITLE ? mTitle : mSubtitle).length() == 0;
+        }
+
+        @Override
+        public int measureWidth(int text, int maxWidth) {
+            if (text == DocumentLayoutEngine.TEXT_TITLE) {
+                return mTitleLayoutCache.getDesiredWidth(mTitle, mTitlePaint, maxWidth);
+            }
+            return mSubtitleLayoutCache.getDesiredWidth(mSubtitle, mSubtitlePaint, maxWidth);
+        }
+
+        @Override
+        public int layout(int text, int width) {
+            if (text == DocumentLayoutEngine.TEXT_TITLE) {
+                return mTitleLayoutCache.getLayout(mTitle, mTitlePaint, width).getHeight();
+            }
+            return mSubtitleLayoutCache.getLayout(mSubtitle, mSubtitlePaint, width).getHeight();
+        }
     }
 
     /**
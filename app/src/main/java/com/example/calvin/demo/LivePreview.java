@@ -0,0 +1,243 @@
+package com.example.calvin.demo;
+
+import android.graphics.Color;
+import android.os.Build;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.ViewGroup;
+import android.widget.EditText;
+
+/**
+ * Applies the input fields of the demo to a {@link DocumentView} while typing. Edits only mark their field as changed, and
+ * all changed fields are parsed and applied together once per display frame, in a single edit transaction and with a
+ * single change of the layout params. However fast the input comes, the view is laid out and drawn at most once per frame.
+ * Fields that can't be parsed are left out until they can.
+ */
+class LivePreview implements Runnable {
+
+    //The fields, each also used as a flag of the set of changed fields
+    static final int FIELD_BACKGROUND_COLOR = 1;
+    static final int FIELD_WIDTH = 1 << 1;
+    static final int FIELD_HEIGHT = 1 << 2;
+    static final int FIELD_BORDER_COLOR = 1 << 3;
+    static final int FIELD_BORDER_WIDTH = 1 << 4;
+    static final int FIELD_DECOR_COLOR = 1 << 5;
+    static final int FIELD_DECOR_SIZE = 1 << 6;
+    static final int FIELD_TITLE_COLOR = 1 << 7;
+    static final int FIELD_TITLE = 1 << 8;
+    static final int FIELD_TITLE_SIZE = 1 << 9;
+    static final int FIELD_SUBTITLE_COLOR = 1 << 10;
+    static final int FIELD_SUBTITLE = 1 << 11;
+    static final int FIELD_SUBTITLE_SIZE = 1 << 12;
+
+    //The number of fields
+    private static final int FIELD_COUNT = 13;
+
+    private final DocumentView mDocumentView;
+
+    //The input of each field, indexed by the bit of its flag
+    private final EditText[] mInputs = new EditText[FIELD_COUNT];
+
+    //The fields changed since the last frame
+    private int mChangedFields;
+
+    //Whether the changes are applied as they come in
+    private boolean mEnabled;
+
+    //Whether the changes are already scheduled for the next frame
+    private boolean mScheduled;
+
+    /**
+     * @param documentView the view to apply the fields to.
+     */
+    LivePreview(DocumentView documentView) {
+        mDocumentView = documentView;
+    }
+
+    /**
+     * Follow the edits of an input field.
+     * @param field one of the FIELD_* constants.
+     * @param input the input of the field.
+     */
+    void bind(final int field, EditText input) {
+        mInputs[Integer.numberOfTrailingZeros(field)] = input;
+        input.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onFieldChanged(field);
+            }
+        });
+    }
+
+    /**
+     * Switch the live preview on or off. Switching it on applies all fields that aren't empty right away.
+     * @param enabled true to apply the fields while typing.
+     */
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (enabled) {
+            int fields = 0;
+            for (int i = 0; i < FIELD_COUNT; i++) {
+                if (getInput(1 << i).length() > 0) {
+                    fields |= 1 << i;
+                }
+            }
+            onFieldChanged(fields);
+        }
+    }
+
+    /**
+     * Remember the changed fields and schedule applying them with the next frame.
+     * @param fields a combination of the FIELD_* constants.
+     */
+    private void onFieldChanged(int fields) {
+        mChangedFields |= fields;
+        if (!mEnabled || mScheduled) {
+            return;
+        }
+        mScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            mDocumentView.postOnAnimation(this);
+        }else {
+            mDocumentView.post(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        mScheduled = false;
+        if (!mEnabled) {
+            return;
+        }
+        int fields = mChangedFields;
+        mChangedFields = 0;
+
+        if ((fields & FIELD_BACKGROUND_COLOR) != 0 && isColor(FIELD_BACKGROUND_COLOR)) {
+            mDocumentView.setBackgroundColor(Color.parseColor(getInput(FIELD_BACKGROUND_COLOR)));
+        }
+
+        ViewGroup.LayoutParams params = mDocumentView.getLayoutParams();
+        int width = (fields & FIELD_WIDTH) != 0 ? parseDimension(getInput(FIELD_WIDTH), params.width) : params.width;
+        int height = (fields & FIELD_HEIGHT) != 0 ? parseDimension(getInput(FIELD_HEIGHT), params.height) : params.height;
+        if (width != params.width || height != params.height) {
+            params.width = width;
+            params.height = height;
+            mDocumentView.setLayoutParams(params);
+        }
+
+        DocumentView.Editor editor = mDocumentView.edit();
+        if ((fields & FIELD_BORDER_COLOR) != 0 && isColor(FIELD_BORDER_COLOR)) {
+            editor.setBorderColor(Color.parseColor(getInput(FIELD_BORDER_COLOR)));
+        }
+        if ((fields & FIELD_BORDER_WIDTH) != 0 && isNumber(FIELD_BORDER_WIDTH)) {
+            editor.setBorderWidth(Float.parseFloat(getInput(FIELD_BORDER_WIDTH)));
+        }
+        if ((fields & FIELD_DECOR_COLOR) != 0 && isColor(FIELD_DECOR_COLOR)) {
+            editor.setDecorColor(Color.parseColor(getInput(FIELD_DECOR_COLOR)));
+        }
+        if ((fields & FIELD_DECOR_SIZE) != 0 && isNumber(FIELD_DECOR_SIZE)) {
+            editor.setDecorSize(Float.parseFloat(getInput(FIELD_DECOR_SIZE)));
+        }
+        if ((fields & FIELD_TITLE_COLOR) != 0 && isColor(FIELD_TITLE_COLOR)) {
+            editor.setTitleColor(Color.parseColor(getInput(FIELD_TITLE_COLOR)));
+        }
+        if ((fields & FIELD_TITLE) != 0 && mInputs[Integer.numberOfTrailingZeros(FIELD_TITLE)] != null) {
+            editor.setTitle(getInput(FIELD_TITLE));
+        }
+        if ((fields & FIELD_TITLE_SIZE) != 0 && isNumber(FIELD_TITLE_SIZE)) {
+            editor.setTitleSize(Float.parseFloat(getInput(FIELD_TITLE_SIZE)));
+        }
+        if ((fields & FIELD_SUBTITLE_COLOR) != 0 && isColor(FIELD_SUBTITLE_COLOR)) {
+            editor.setSubtitleColor(Color.parseColor(getInput(FIELD_SUBTITLE_COLOR)));
+        }
+        if ((fields & FIELD_SUBTITLE) != 0 && mInputs[Integer.numberOfTrailingZeros(FIELD_SUBTITLE)] != null) {
+            editor.setSubtitle(getInput(FIELD_SUBTITLE));
+        }
+        if ((fields & FIELD_SUBTITLE_SIZE) != 0 && isNumber(FIELD_SUBTITLE_SIZE)) {
+            editor.setSubtitleSize(Float.parseFloat(getInput(FIELD_SUBTITLE_SIZE)));
+        }
+        editor.apply();
+    }
+
+    /**
+     * Get the current input of a field.
+     * @param field one of the FIELD_* constants.
+     * @return the input, which is empty if the field isn't bound.
+     */
+    private String getInput(int field) {
+        EditText input = mInputs[Integer.numberOfTrailingZeros(field)];
+        return input == null ? "" : input.getText().toString().trim();
+    }
+
+    /**
+     * Check whether a field holds a color in the form #RRGGBB or #AARRGGBB, so that it can be parsed without an exception.
+     * @param field one of the FIELD_* constants.
+     * @return true if it does.
+     */
+    private boolean isColor(int field) {
+        String input = getInput(field);
+        if ((input.length() != 7 && input.length() != 9) || input.charAt(0) != '#') {
+            return false;
+        }
+        for (int i = 1; i < input.length(); i++) {
+            if (Character.digit(input.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check whether a field holds a non-negative decimal number, so that it can be parsed without an exception.
+     * @param field one of the FIELD_* constants.
+     * @return true if it does.
+     */
+    private boolean isNumber(int field) {
+        String input = getInput(field);
+        boolean digits = false;
+        boolean point = false;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            }else if (c == '.' && !point) {
+                point = true;
+            }else {
+                return false;
+            }
+        }
+        return digits;
+    }
+
+    /**
+     * Parse a width or height in the same form the demo buttons take.
+     * @param input wrap, match or a size in pixel.
+     * @param fallback the value to return if the input can't be parsed.
+     * @return the layout params value.
+     */
+    private static int parseDimension(String input, int fallback) {
+        if (input.equalsIgnoreCase("wrap")) {
+            return ViewGroup.LayoutParams.WRAP_CONTENT;
+        }
+        if (input.equalsIgnoreCase("match")) {
+            return ViewGroup.LayoutParams.MATCH_PARENT;
+        }
+        if (input.length() == 0 || input.length() > 6) {
+            return fallback;
+        }
+        for (int i = 0; i < input.length(); i++) {
+            if (input.charAt(i) < '0' || input.charAt(i) > '9') {
+                return fallback;
+            }
+        }
+        return Integer.parseInt(input);
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.calvin.demo;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Counts how often a {@link DocumentView} measures and draws, how often its text layouts are reused, and how long measuring
+ * and drawing take. Durations are kept in histograms of power of two nanosecond buckets, so recording costs a few
+ * arithmetic operations and never allocates. While enabled, measuring and drawing are also wrapped in {@link Trace} sections
+ * that show up in systrace since Jelly Bean MR2.
+ *
+ * Recording is off by default and switched on and off for all views through {@link #setEnabled(boolean)}. Take a
+ * {@link Snapshot} to export the numbers, for example per screen by merging the snapshots of its views. Must only be used
+ * on the UI thread.
+ */
+public final class RenderStats {
+
+    //The number of histogram buckets, bucket i counts durations below 2^i nanoseconds and at least 2^(i-1)
+    private static final int BUCKET_COUNT = 64;
+
+    //The trace section names
+    private static final String SECTION_MEASURE = "DocumentView#onMeasure";
+    private static final String SECTION_DRAW = "DocumentView#onDraw";
+
+    //Whether recording is enabled for all views
+    private static volatile boolean sEnabled;
+
+    private long mMeasureCount;
+    private long mMeasureNanos;
+    private final long[] mMeasureHistogram = new long[BUCKET_COUNT];
+    private long mDrawCount;
+    private long mDrawNanos;
+    private final long[] mDrawHistogram = new long[BUCKET_COUNT];
+    private long mLayoutCacheHits;
+    private long mLayoutCacheMisses;
+
+    RenderStats() {
+    }
+
+    /**
+     * Switch recording on or off for all views. Views record nothing and skip the trace sections while it is off.
+     * @param enabled true to record.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * @return whether recording is enabled.
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Start timing a measure pass.
+     * @return the start time to be handed to {@link #endMeasure(long)}.
+     */
+    long beginMeasure() {
+        return beginSection(SECTION_MEASURE);
+    }
+
+    /**
+     * Record a measure pass.
+     * @param start the time returned by {@link #beginMeasure()}.
+     */
+    void endMeasure(long start) {
+        long nanos = endSection(start);
+        mMeasureCount++;
+        mMeasureNanos += nanos;
+        mMeasureHistogram[getBucket(nanos)]++;
+    }
+
+    /**
+     * Start timing a draw pass.
+     * @return the start time to be handed to {@link #endDraw(long)}.
+     */
+    long beginDraw() {
+        return beginSection(SECTION_DRAW);
+    }
+
+    /**
+     * Record a draw pass.
+     * @param start the time returned by {@link #beginDraw()}.
+     */
+    void endDraw(long start) {
+        long nanos = endSection(start);
+        mDrawCount++;
+        mDrawNanos += nanos;
+        mDrawHistogram[getBucket(nanos)]++;
+    }
+
+    /**
+     * Record a text layout lookup.
+     * @param hit true if the cached layout has been reused, false if it has been built.
+     */
+    void recordLayoutCache(boolean hit) {
+        if (hit) {
+            mLayoutCacheHits++;
+        }else {
+            mLayoutCacheMisses++;
+        }
+    }
+
+    /**
+     * Copy the current numbers.
+     * @return a snapshot of the current numbers.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(mMeasureCount, mMeasureNanos, mMeasureHistogram.clone(), mDrawCount, mDrawNanos,
+                mDrawHistogram.clone(), mLayoutCacheHits, mLayoutCacheMisses);
+    }
+
+    /**
+     * Clear all numbers, for example when a screen is shown again.
+     */
+    public void reset() {
+        mMeasureCount = 0;
+        mMeasureNanos = 0;
+        mDrawCount = 0;
+        mDrawNanos = 0;
+        mLayoutCacheHits = 0;
+        mLayoutCacheMisses = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mMeasureHistogram[i] = 0;
+            mDrawHistogram[i] = 0;
+        }
+    }
+
+    /**
+     * Open a trace section and read the clock.
+     * @param name the name of the section.
+     * @return the start time in nanoseconds.
+     */
+    private static long beginSection(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Close the trace section opened by {@link #beginSection(String)}.
+     * @param start the start time in nanoseconds.
+     * @return the time passed since then in nanoseconds.
+     */
+    private static long endSection(long start) {
+        long nanos = System.nanoTime() - start;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+        return nanos;
+    }
+
+    /**
+     * Find the histogram bucket of a duration.
+     * @param nanos the duration in nanoseconds.
+     * @return the index of the bucket.
+     */
+    private static int getBucket(long nanos) {
+        return nanos <= 0 ? 0 : Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKET_COUNT - 1);
+    }
+
+    /**
+     * An immutable copy of the numbers recorded by one or more views.
+     */
+    public static final class Snapshot {
+
+        private final long mMeasureCount;
+        private final long mMeasureNanos;
+        private final long[] mMeasureHistogram;
+        private final long mDrawCount;
+        private final long mDrawNanos;
+        private final long[] mDrawHistogram;
+        private final long mLayoutCacheHits;
+        private final long mLayoutCacheMisses;
+
+        private Snapshot(long measureCount, long measureNanos, long[] measureHistogram, long drawCount, long drawNanos,
+                         long[] drawHistogram, long layoutCacheHits, long layoutCacheMisses) {
+            mMeasureCount = measureCount;
+            mMeasureNanos = measureNanos;
+            mMeasureHistogram = measureHistogram;
+            mDrawCount = drawCount;
+            mDrawNanos = drawNanos;
+            mDrawHistogram = drawHistogram;
+            mLayoutCacheHits = layoutCacheHits;
+            mLayoutCacheMisses = layoutCacheMisses;
+        }
+
+        /**
+         * @return the number of measure passes.
+         */
+        public long getMeasureCount() {
+            return mMeasureCount;
+        }
+
+        /**
+         * @return the total time spent measuring in nanoseconds.
+         */
+        public long getMeasureNanos() {
+            return mMeasureNanos;
+        }
+
+        /**
+         * @return the number of draw passes.
+         */
+        public long getDrawCount() {
+            return mDrawCount;
+        }
+
+        /**
+         * @return the total time spent drawing in nanoseconds.
+         */
+        public long getDrawNanos() {
+            return mDrawNanos;
+        }
+
+        /**
+         * @return the number of text layout lookups that reused the cached layout.
+         */
+        public long getLayoutCacheHits() {
+            return mLayoutCacheHits;
+        }
+
+        /**
+         * @return the number of text layout lookups that had to build a layout.
+         */
+        public long getLayoutCacheMisses() {
+            return mLayoutCacheMisses;
+        }
+
+        /**
+         * Estimate a percentile of the measure durations.
+         * @param percentile the percentile between 0 and 100.
+         * @return the upper bound of the histogram bucket the percentile falls into in nanoseconds, 0 if nothing is recorded.
+         */
+        public long getMeasurePercentileNanos(double percentile) {
+            return getPercentile(mMeasureHistogram, mMeasureCount, percentile);
+        }
+
+        /**
+         * Estimate a percentile of the draw durations.
+         * @param percentile the percentile between 0 and 100.
+         * @return the upper bound of the histogram bucket the percentile falls into in nanoseconds, 0 if nothing is recorded.
+         */
+        public long getDrawPercentileNanos(double percentile) {
+            return getPercentile(mDrawHistogram, mDrawCount, percentile);
+        }
+
+        /**
+         * Get the histogram of the measure durations.
+         * @return a copy of the histogram, element i counts durations below 2^i nanoseconds and at least 2^(i-1).
+         */
+        public long[] getMeasureHistogram() {
+            return mMeasureHistogram.clone();
+        }
+
+        /**
+         * Get the histogram of the draw durations.
+         * @return a copy of the histogram, element i counts durations below 2^i nanoseconds and at least 2^(i-1).
+         */
+        public long[] getDrawHistogram() {
+            return mDrawHistogram.clone();
+        }
+
+        /**
+         * Add up the numbers of this snapshot and another one, for example to get the numbers of a whole screen.
+         * @param other the snapshot to add.
+         * @return a new snapshot with the sums.
+         */
+        public Snapshot merge(Snapshot other) {
+            long[] measureHistogram = new long[BUCKET_COUNT];
+            long[] drawHistogram = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                measureHistogram[i] = mMeasureHistogram[i] + other.mMeasureHistogram[i];
+                drawHistogram[i] = mDrawHistogram[i] + other.mDrawHistogram[i];
+            }
+            return new Snapshot(mMeasureCount + other.mMeasureCount, mMeasureNanos + other.mMeasureNanos, measureHistogram,
+                    mDrawCount + other.mDrawCount, mDrawNanos + other.mDrawNanos, drawHistogram,
+                    mLayoutCacheHits + other.mLayoutCacheHits, mLayoutCacheMisses + other.mLayoutCacheMisses);
+        }
+
+        /**
+         * Estimate a percentile from a histogram.
+         * @param histogram the histogram.
+         * @param count the total count of the histogram.
+         * @param percentile the percentile between 0 and 100.
+         * @return the upper bound of the bucket the percentile falls into, 0 if the histogram is empty.
+         */
+        private static long getPercentile(long[] histogram, long count, double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * Math.max(0, Math.min(percentile, 100)) / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += histogram[i];
+                if (seen >= rank && seen > 0) {
+                    return i == 0 ? 0 : i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << i;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
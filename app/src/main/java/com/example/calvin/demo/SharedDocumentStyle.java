@@ -0,0 +1,59 @@
+package com.example.calvin.demo;
+
+import java.util.ArrayList;
+
+/**
+ * A {@link DocumentStyle} shared by a group of {@link DocumentView}s. Setting a new style updates every attached view bound to
+ * it in one pass, while detached views pick it up once they are attached again. Must only be used on the UI thread.
+ */
+public final class SharedDocumentStyle {
+
+    //The current style
+    private DocumentStyle mStyle;
+
+    //The attached views bound to this style
+    private final ArrayList<DocumentView> mViews = new ArrayList<>();
+
+    /**
+     * @param style the initial style.
+     */
+    public SharedDocumentStyle(DocumentStyle style) {
+        mStyle = style;
+    }
+
+    /**
+     * @return the current style.
+     */
+    public DocumentStyle get() {
+        return mStyle;
+    }
+
+    /**
+     * Set a new style and apply it to every attached view bound to it. Each view redraws or requests layout once.
+     * @param style the style to be set.
+     */
+    public void set(DocumentStyle style) {
+        mStyle = style;
+        for (int i = 0, size = mViews.size(); i < size; i++) {
+            mViews.get(i).setStyle(style);
+        }
+    }
+
+    /**
+     * Start updating the given view on style changes.
+     * @param view the attached view.
+     */
+    void register(DocumentView view) {
+        if (!mViews.contains(view)) {
+            mViews.add(view);
+        }
+    }
+
+    /**
+     * Stop updating the given view on style changes.
+     * @param view the view being detached or unbound.
+     */
+    void unregister(DocumentView view) {
+        mViews.remove(view);
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.calvin.demo;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.ViewGroup;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Drives randomized property changes on a {@link DocumentView} once per frame and records the frame intervals reported by
+ * {@link Choreographer}, to compare rendering configurations on a device. The report lists the 50th, 95th and 99th percentile
+ * frame time, the number of dropped frames and the measure and draw numbers recorded by {@link RenderStats} meanwhile.
+ *
+ * The changes are drawn from a fixed seed, so every run applies the same sequence.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class StressMode implements Choreographer.FrameCallback {
+
+    /**
+     * Receives the report once a run is finished.
+     */
+    interface Listener {
+
+        /**
+         * @param report the human readable report of the run.
+         */
+        void onStressModeFinished(String report);
+    }
+
+    //The seed of the random changes
+    private static final long SEED = 20171201;
+
+    //The number of different changes
+    private static final int CHANGE_COUNT = 10;
+
+    //The texts to pick from
+    private static final String[] TEXTS = {
+            "孩子的教育资源V1.1.pptx",
+            "6.9M",
+            "Quarterly report",
+            "A rather long document name that has to wrap onto several lines.pdf",
+            "",
+            "README.md",
+    };
+
+    //The colors to pick from
+    private static final int[] COLORS = {
+            0xFF000000, 0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0xFFFFFF00, 0xFFFF00FF, 0xFF888888,
+    };
+
+    //The sizes to pick from for width and height in pixel, or as layout params constants
+    private static final int[] DIMENSIONS = {
+            ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.MATCH_PARENT, 150, 300, 450,
+    };
+
+    private final DocumentView mDocumentView;
+    private final long mFrameIntervalNanos;
+    private final Listener mListener;
+    private final Random mRandom = new Random(SEED);
+
+    //The recorded frame intervals
+    private long[] mFrameNanos;
+    private int mFrameCount;
+
+    //The time of the previous frame, 0 before the first frame
+    private long mLastFrameTimeNanos;
+
+    //Whether recording was enabled before the run
+    private boolean mWasRecording;
+
+    private boolean mRunning;
+
+    /**
+     * @param documentView the view to change.
+     * @param refreshRate the refresh rate of the display in frames per second.
+     * @param listener the listener to receive the report.
+     */
+    StressMode(DocumentView documentView, float refreshRate, Listener listener) {
+        mDocumentView = documentView;
+        mFrameIntervalNanos = (long) (1000000000 / refreshRate);
+        mListener = listener;
+    }
+
+    /**
+     * Start a run.
+     * @param frames the number of frames to record.
+     */
+    void start(int frames) {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mFrameNanos = new long[frames];
+        mFrameCount = 0;
+        mLastFrameTimeNanos = 0;
+        mRandom.setSeed(SEED);
+        mWasRecording = RenderStats.isEnabled();
+        RenderStats.setEnabled(true);
+        mDocumentView.getRenderStats().reset();
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Stop the running run without a report.
+     */
+    void stop() {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+        RenderStats.setEnabled(mWasRecording);
+    }
+
+    /**
+     * @return whether a run is in progress.
+     */
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return;
+        }
+        if (mLastFrameTimeNanos != 0) {
+            mFrameNanos[mFrameCount++] = frameTimeNanos - mLastFrameTimeNanos;
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        if (mFrameCount == mFrameNanos.length) {
+            stop();
+            mListener.onStressModeFinished(buildReport());
+            return;
+        }
+        applyRandomChange();
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Change a random property of the view.
+     */
+    private void applyRandomChange() {
+        switch (mRandom.nextInt(CHANGE_COUNT)) {
+            case 0:
+                mDocumentView.setTitle(TEXTS[mRandom.nextInt(TEXTS.length)]);
+                break;
+            case 1:
+                mDocumentView.setSubtitle(TEXTS[mRandom.nextInt(TEXTS.length)]);
+                break;
+            case 2:
+                mDocumentView.setTitleSize(12 + mRandom.nextInt(40));
+                break;
+            case 3:
+                mDocumentView.setSubtitleSize(12 + mRandom.nextInt(40));
+                break;
+            case 4:
+                mDocumentView.setBorderColor(COLORS[mRandom.nextInt(COLORS.length)]);
+                break;
+            case 5:
+                mDocumentView.setDecorColor(COLORS[mRandom.nextInt(COLORS.length)]);
+                break;
+            case 6:
+                mDocumentView.edit()
+                        .setTitleColor(COLORS[mRandom.nextInt(COLORS.length)])
+                        .setSubtitleColor(COLORS[mRandom.nextInt(COLORS.length)])
+                        .apply();
+                break;
+            case 7:
+                mDocumentView.edit()
+                        .setBorderWidth(1 + mRandom.nextInt(10))
+                        .setDecorSize(mRandom.nextInt(60))
+                        .apply();
+                break;
+            case 8: {
+                ViewGroup.LayoutParams params = mDocumentView.getLayoutParams();
+                params.width = DIMENSIONS[mRandom.nextInt(DIMENSIONS.length)];
+                mDocumentView.setLayoutParams(params);
+                break;
+            }
+            default: {
+                ViewGroup.LayoutParams params = mDocumentView.getLayoutParams();
+                params.height = DIMENSIONS[mRandom.nextInt(DIMENSIONS.length)];
+                mDocumentView.setLayoutParams(params);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Build the report of the finished run.
+     * @return the report.
+     */
+    private String buildReport() {
+        long[] frameNanos = Arrays.copyOf(mFrameNanos, mFrameCount);
+        Arrays.sort(frameNanos);
+        long dropped = 0;
+        for (long nanos : frameNanos) {
+            dropped += Math.max(Math.round((double) nanos / mFrameIntervalNanos) - 1, 0);
+        }
+        RenderStats.Snapshot stats = mDocumentView.getRenderStats().snapshot();
+        return String.format(Locale.US,
+                "%d frames: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, %d dropped\n"
+                        + "measure: %d, p50 < %d µs, p99 < %d µs\n"
+                        + "draw: %d, p50 < %d µs, p99 < %d µs\n"
+                        + "layout cache: %d hits, %d misses",
+                frameNanos.length, getPercentile(frameNanos, 50) / 1e6, getPercentile(frameNanos, 95) / 1e6,
+                getPercentile(frameNanos, 99) / 1e6, dropped,
+                stats.getMeasureCount(), stats.getMeasurePercentileNanos(50) / 1000, stats.getMeasurePercentileNanos(99) / 1000,
+                stats.getDrawCount(), stats.getDrawPercentileNanos(50) / 1000, stats.getDrawPercentileNanos(99) / 1000,
+                stats.getLayoutCacheHits(), stats.getLayoutCacheMisses());
+    }
+
+    /**
+     * Get a percentile of sorted values by the nearest rank.
+     * @param sorted the values in ascending order.
+     * @param percentile the percentile between 0 and 100.
+     * @return the value at the percentile, 0 if there are no values.
+     */
+    private static long getPercentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(sorted.length * percentile / 100.0);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+}
@@ -0,0 +1,511 @@
+package com.example.calvin.demo;
+
+import android.annotation.TargetApi;
+import android.graphics.Typeface;
+import android.os.Build;
+import android.text.BoringLayout;
+import android.text.DynamicLayout;
+import android.text.Editable;
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+/**
+ * Holds the text layout of a single piece of text together with the inputs it was built from. The layout is only rebuilt when
+ * the text, the metric affecting state of the paint or the wrap width changes. Colors are not part of the key since the layout
+ * draws with the paint it was given, so a color change is picked up without rebuilding anything.
+ *
+ * Text that fits on a single line without any special handling, which is the common case for short labels, is laid out
+ * with a {@link BoringLayout}. Its metrics come for free while measuring and the layout object is reused when the text
+ * changes. A {@link StaticLayout} is only built if the text actually has to wrap, with the line breaking quality set by
+ * {@link #setLayoutQuality(int)}.
+ *
+ * The number of lines can be limited through {@link #setMaxLines(int, TextUtils.TruncateAt)}. Only a prefix of the text that is
+ * sure to cover the visible lines is laid out then, and measuring stops as soon as the text is found not to fit the available
+ * width, so the cost stays bounded no matter how long the text is.
+ *
+ * Editable text that has to wrap is laid out with a {@link DynamicLayout}, which reflows only the paragraphs that change as
+ * the text is edited. The owner reports edits through {@link #onTextChanged()} so that the layout is kept while the measured
+ * width is refreshed. Dynamic layouts always break lines the simple way and are not used if the number of lines is limited.
+ *
+ * A cache can also be filled on a background thread with a private copy of the paint and then handed over to the cache used on
+ * the UI thread through {@link #adopt(TextLayoutCache, TextPaint)}.
+ */
+class TextLayoutCache {
+
+    //The number of characters handed to the paint at first when looking for the end of a line
+    private static final int BREAK_WINDOW = 256;
+
+    //The cached layout, null if it has to be rebuilt
+    private Layout mLayout;
+
+    //The width the cached layout was built for
+    private int mLayoutWidth;
+
+    //The width required to draw the text on a single line, -1 if it has to be measured again
+    private int mDesiredWidth = -1;
+
+    //Whether measuring stopped at mDesiredWidth because the text doesn't fit, in which case the real width is larger
+    private boolean mDesiredWidthClamped;
+
+    //The metrics of the text if it is boring, null if it isn't or hasn't been measured yet
+    private BoringLayout.Metrics mBoring;
+
+    //The metrics object reused for checking whether the text is boring
+    private BoringLayout.Metrics mBoringBuffer;
+
+    //A boring layout that is no longer valid and can be reused for the next boring text
+    private BoringLayout mSpareBoringLayout;
+
+    //The line breaking quality, one of the DocumentView.LAYOUT_QUALITY_* constants
+    private int mLayoutQuality = DocumentView.LAYOUT_QUALITY_FAST;
+
+    //The maximum number of lines laid out, Integer.MAX_VALUE if unlimited
+    private int mMaxLines = Integer.MAX_VALUE;
+
+    //Where the text is ellipsized if it has more lines than allowed, null to cut it off
+    private TextUtils.TruncateAt mEllipsize;
+
+    //The number of layouts built so far, for telling reused layouts from new ones
+    private int mBuildCount;
+
+    //The text the cache is built for
+    private CharSequence mText;
+
+    //The paint the cache is built with
+    private TextPaint mPaint;
+
+    //The paint the cached layout draws with, which is a private copy if the layout has been adopted
+    private TextPaint mLayoutPaint;
+
+    //Whether the cached layout has been taken over from another cache, so that it draws with a private copy of the paint
+    private boolean mAdopted;
+
+    //The metric affecting paint state the cache is built with
+    private float mTextSize;
+    private Typeface mTypeface;
+    private float mTextScaleX;
+    private float mTextSkewX;
+    private float mLetterSpacing;
+    private int mFlags;
+
+    /**
+     * Get the width required to draw the text on a single line, but no more than the given width.
+     * @param text the text to be measured.
+     * @param paint the paint used for measuring.
+     * @param maxWidth the width available, Integer.MAX_VALUE if unlimited. Measuring stops once the text exceeds it.
+     * @return the desired width in pixel, rounded up.
+     */
+    int getDesiredWidth(CharSequence text, TextPaint paint, int maxWidth) {
+        updateKey(text, paint);
+        measure(text, paint, maxWidth);
+        return Math.min(mDesiredWidth, maxWidth);
+    }
+
+    /**
+     * Get a layout of the text wrapped at the given width, reusing the cached one if nothing it depends on has changed.
+     * @param text the text to be laid out.
+     * @param paint the paint used for laying out and drawing.
+     * @param width the wrap width in pixel.
+     * @return the layout of the text.
+     */
+    Layout getLayout(CharSequence text, TextPaint paint, int width) {
+        updateKey(text, paint);
+        if (mLayout == null || mLayoutWidth != width) {
+            measure(text, paint, width);
+            BoringLayout spare = mLayout instanceof BoringLayout ? (BoringLayout) mLayout : mSpareBoringLayout;
+            mSpareBoringLayout = null;
+            if (mBoring != null && mBoring.width <= width) {
+                if (spare != null) {
+                    mLayout = spare.replaceOrMake(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, mBoring, false);
+                }else {
+                    mLayout = BoringLayout.make(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, mBoring, false);
+                }
+            }else if (text instanceof Editable && mMaxLines == Integer.MAX_VALUE) {
+                mLayout = new DynamicLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, false);
+            }else {
+                mLayout = buildBoundedLayout(text, paint, width);
+            }
+            mLayoutWidth = width;
+            mLayoutPaint = paint;
+            mAdopted = false;
+            mBuildCount++;
+        }
+        return mLayout;
+    }
+
+    /**
+     * Get the number of layouts built so far. It changes across a call to {@link #getLayout(CharSequence, TextPaint, int)}
+     * only if the cached layout couldn't be reused.
+     * @return the number of layouts built.
+     */
+    int getBuildCount() {
+        return mBuildCount;
+    }
+
+    /**
+     * Build a layout for text that may have to wrap, with no more than the maximum number of lines. Only the text that can
+     * show up on those lines is laid out. The platform ellipsizes the last line since Marshmallow, while older platforms just cut
+     * the text off after it.
+     * @param text the text to be laid out.
+     * @param paint the paint used for laying out and drawing.
+     * @param width the wrap width in pixel.
+     * @return the new layout.
+     */
+    private StaticLayout buildBoundedLayout(CharSequence text, TextPaint paint, int width) {
+        int end = getVisibleEnd(text, paint, width);
+        StaticLayout layout = buildStaticLayout(text, end, paint, width);
+        if (layout.getLineCount() > mMaxLines) {
+            layout = buildStaticLayout(text.subSequence(0, layout.getLineEnd(mMaxLines - 1)), paint, width);
+        }
+        return layout;
+    }
+
+    /**
+     * Find the end of the text that is sure to cover all visible lines. Breaking at any character fits at least as much text on
+     * a line as breaking at words does, so the text breaking that way fills one line more than visible is enough to tell whether
+     * anything is cut off.
+     * @param text the text to be laid out.
+     * @param paint the paint used for laying out.
+     * @param width the wrap width in pixel.
+     * @return the end of the text to be laid out.
+     */
+    private int getVisibleEnd(CharSequence text, TextPaint paint, int width) {
+        int length = text.length();
+        if (mMaxLines == Integer.MAX_VALUE) {
+            return length;
+        }
+        int end = 0;
+        for (int line = 0; line <= mMaxLines && end < length; line++) {
+            end += Math.max(breakLine(text, end, paint, width), 1);
+        }
+        //Don't split a surrogate pair.
+        if (end < length && Character.isHighSurrogate(text.charAt(end - 1))) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * Count the characters from the given offset that fit on a single line. The paint only gets a window of the text at a time,
+     * which grows until the line is full, so the cost depends on the length of the line rather than the length of the text.
+     * @param text the text to be broken.
+     * @param start the offset of the line.
+     * @param paint the paint used for measuring.
+     * @param width the width of the line in pixel.
+     * @return the number of characters that fit.
+     */
+    private static int breakLine(CharSequence text, int start, TextPaint paint, float width) {
+        int length = text.length();
+        int window = BREAK_WINDOW;
+        while (true) {
+            int end = (int) Math.min((long) start + window, length);
+            int count = paint.breakText(text, start, end, true, width, null);
+            if (count < end - start || end == length) {
+                return count;
+            }
+            window *= 2;
+        }
+    }
+
+    /**
+     * Build a layout for the whole text.
+     * @param text the text to be laid out.
+     * @param paint the paint used for laying out and drawing.
+     * @param width the wrap width in pixel.
+     * @return the new layout.
+     */
+    private StaticLayout buildStaticLayout(CharSequence text, TextPaint paint, int width) {
+        return buildStaticLayout(text, text.length(), paint, width);
+    }
+
+    /**
+     * Build a layout for the beginning of the text. The break strategy, hyphenation and the line limit can only be handed to
+     * the platform since Marshmallow. Older platforms always break lines the simple way without hyphenation, which is what
+     * {@link DocumentView#LAYOUT_QUALITY_FAST} asks for anyway.
+     * @param text the text to be laid out.
+     * @param end the end of the text to be laid out.
+     * @param paint the paint used for laying out and drawing.
+     * @param width the wrap width in pixel.
+     * @return the new layout.
+     */
+    private StaticLayout buildStaticLayout(CharSequence text, int end, TextPaint paint, int width) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return buildStaticLayoutWithQuality(text, end, paint, width);
+        }
+        return new StaticLayout(text, 0, end, paint, width, Layout.Alignment.ALIGN_NORMAL, 1, 0, false, null, 0);
+    }
+
+    /**
+     * Build a layout with the break strategy and hyphenation matching the layout quality, and the line limit.
+     * @param text the text to be laid out.
+     * @param end the end of the text to be laid out.
+     * @param paint the paint used for laying out and drawing.
+     * @param width the wrap width in pixel.
+     * @return the new layout.
+     */
+    @TargetApi(Build.VERSION_CODES.M)
+    private StaticLayout buildStaticLayoutWithQuality(CharSequence text, int end, TextPaint paint, int width) {
+        int breakStrategy;
+        int hyphenationFrequency;
+        switch (mLayoutQuality) {
+            case DocumentView.LAYOUT_QUALITY_BALANCED:
+                breakStrategy = Layout.BREAK_STRATEGY_BALANCED;
+                hyphenationFrequency = Layout.HYPHENATION_FREQUENCY_NORMAL;
+                break;
+            case DocumentView.LAYOUT_QUALITY_HIGH:
+                breakStrategy = Layout.BREAK_STRATEGY_HIGH_QUALITY;
+                hyphenationFrequency = Layout.HYPHENATION_FREQUENCY_NORMAL;
+                break;
+            default:
+                breakStrategy = Layout.BREAK_STRATEGY_SIMPLE;
+                hyphenationFrequency = Layout.HYPHENATION_FREQUENCY_NONE;
+                break;
+        }
+        return StaticLayout.Builder.obtain(text, 0, end, paint, width)
+                .setAlignment(Layout.Alignment.ALIGN_NORMAL)
+                .setLineSpacing(0, 1)
+                .setIncludePad(false)
+                .setBreakStrategy(breakStrategy)
+                .setHyphenationFrequency(hyphenationFrequency)
+                .setMaxLines(mMaxLines)
+                .setEllipsize(mEllipsize)
+                .setEllipsizedWidth(width)
+                .build();
+    }
+
+    /**
+     * Set the line breaking quality of text that has to wrap. Changing it drops the cached layout.
+     * @param layoutQuality one of the DocumentView.LAYOUT_QUALITY_* constants.
+     */
+    void setLayoutQuality(int layoutQuality) {
+        if (mLayoutQuality != layoutQuality) {
+            mLayoutQuality = layoutQuality;
+            dropLayout();
+        }
+    }
+
+    /**
+     * Limit the number of lines of text that has to wrap. Changing it drops the cached layout.
+     * @param maxLines the maximum number of lines, Integer.MAX_VALUE if unlimited. At least one line is always laid out.
+     * @param ellipsize where to ellipsize the text if it has more lines, or null to cut it off.
+     */
+    void setMaxLines(int maxLines, TextUtils.TruncateAt ellipsize) {
+        maxLines = Math.max(maxLines, 1);
+        if (mMaxLines != maxLines || mEllipsize != ellipsize) {
+            mMaxLines = maxLines;
+            mEllipsize = ellipsize;
+            dropLayout();
+        }
+    }
+
+    /**
+     * Take over the layout quality and line limit of another cache.
+     * @param other the cache to copy the configuration from.
+     */
+    void copyConfig(TextLayoutCache other) {
+        setLayoutQuality(other.mLayoutQuality);
+        setMaxLines(other.mMaxLines, other.mEllipsize);
+    }
+
+    /**
+     * Measure the text unless it has been measured already for the given width. Text that doesn't fit the width is only measured
+     * up to it. Boring text gets its width from the boring metrics, other text is measured as a single line.
+     * @param text the text to be measured.
+     * @param paint the paint used for measuring.
+     * @param maxWidth the width available, Integer.MAX_VALUE if unlimited.
+     */
+    private void measure(CharSequence text, TextPaint paint, int maxWidth) {
+        if (mDesiredWidth >= 0 && (!mDesiredWidthClamped || maxWidth <= mDesiredWidth)) {
+            return;
+        }
+        if (maxWidth != Integer.MAX_VALUE && breakLine(text, 0, paint, maxWidth) < text.length()) {
+            //The text has to wrap anyway, so the rest of it doesn't need to be measured.
+            mBoring = null;
+            mDesiredWidth = maxWidth;
+            mDesiredWidthClamped = true;
+            return;
+        }
+        mDesiredWidthClamped = false;
+        if (mBoringBuffer == null) {
+            mBoringBuffer = new BoringLayout.Metrics();
+        }
+        mBoring = BoringLayout.isBoring(text, paint, mBoringBuffer);
+        if (mBoring != null) {
+            mDesiredWidth = mBoring.width;
+        }else {
+            mDesiredWidth = text.length() == 0 ? 0 : (int) Math.ceil(paint.measureText(text, 0, text.length()));
+        }
+    }
+
+    /**
+     * Take over the results of another cache that has been filled with a copy of the given paint, typically on a background
+     * thread. Nothing is taken over if the metric affecting state of the copy no longer matches the paint, or if the other cache
+     * uses a different layout quality or line limit.
+     * @param other the cache to take the results from.
+     * @param paint the paint this cache is used with.
+     * @return true if the results have been taken over.
+     */
+    boolean adopt(TextLayoutCache other, TextPaint paint) {
+        if (other.mPaint == null || !sameMetrics(other.mPaint, paint) || other.mLayoutQuality != mLayoutQuality
+                || other.mMaxLines != mMaxLines || other.mEllipsize != mEllipsize) {
+            return false;
+        }
+        updateKey(other.mText, paint);
+        mDesiredWidth = other.mDesiredWidth;
+        mDesiredWidthClamped = other.mDesiredWidthClamped;
+        mBoring = other.mBoring;
+        mLayout = other.mLayout;
+        mLayoutWidth = other.mLayoutWidth;
+        mLayoutPaint = other.mLayoutPaint;
+        mAdopted = mLayout != null;
+        return true;
+    }
+
+    /**
+     * Make sure the cached layout draws with the current state of the given paint. An adopted layout draws with its private
+     * copy of the paint, which takes over the color. A layout built by this cache with another paint, because the owner has
+     * replaced its paint since measuring, is rebuilt at the same width instead. The old paint may be shared with others, so it
+     * must never be written to.
+     * @param layout the layout about to be drawn.
+     * @param paint the paint this cache is used with.
+     * @return the layout to be drawn, which only differs from the given one if it has been rebuilt.
+     */
+    Layout updateDrawState(Layout layout, TextPaint paint) {
+        if (layout == null || layout != mLayout || mLayoutPaint == paint) {
+            return layout;
+        }
+        if (mAdopted) {
+            mLayoutPaint.setColor(paint.getColor());
+            return layout;
+        }
+        return getLayout(mText, paint, mLayoutWidth);
+    }
+
+    /**
+     * @return the paint the cached layout draws with, null if there is no layout.
+     */
+    TextPaint getLayoutPaint() {
+        return mLayoutPaint;
+    }
+
+    /**
+     * Tell the cache that the editable text it is built for has been changed. A dynamic layout follows the edits by itself and
+     * is kept, anything else has to be rebuilt.
+     */
+    void onTextChanged() {
+        if (!(mLayout instanceof DynamicLayout)) {
+            dropLayout();
+        }
+        mDesiredWidth = -1;
+        mBoring = null;
+    }
+
+    /**
+     * Drop everything cached so that the next request rebuilds from scratch.
+     */
+    void invalidate() {
+        mLayout = null;
+        mSpareBoringLayout = null;
+        mLayoutPaint = null;
+        mAdopted = false;
+        mDesiredWidth = -1;
+        mBoring = null;
+        mText = null;
+        mPaint = null;
+    }
+
+    /**
+     * Compare the given inputs with the ones the cache is built for and drop the cached results if any of them differs.
+     * @param text the requested text.
+     * @param paint the requested paint.
+     */
+    private void updateKey(CharSequence text, TextPaint paint) {
+        float letterSpacing = getLetterSpacing(paint);
+        if (mPaint == paint
+                && mTextSize == paint.getTextSize()
+                && mTypeface == paint.getTypeface()
+                && mTextScaleX == paint.getTextScaleX()
+                && mTextSkewX == paint.getTextSkewX()
+                && mLetterSpacing == letterSpacing
+                && mFlags == paint.getFlags()
+                && sameText(mText, text)) {
+            return;
+        }
+        dropLayout();
+        mDesiredWidth = -1;
+        mBoring = null;
+        mText = text;
+        mPaint = paint;
+        mTextSize = paint.getTextSize();
+        mTypeface = paint.getTypeface();
+        mTextScaleX = paint.getTextScaleX();
+        mTextSkewX = paint.getTextSkewX();
+        mLetterSpacing = letterSpacing;
+        mFlags = paint.getFlags();
+    }
+
+    /**
+     * Drop the cached layout, keeping it as spare if it is a boring one.
+     */
+    void dropLayout() {
+        if (mLayout instanceof BoringLayout) {
+            mSpareBoringLayout = (BoringLayout) mLayout;
+        }
+        mLayout = null;
+        mLayoutPaint = null;
+        mAdopted = false;
+    }
+
+    /**
+     * Check whether two paints lay out text the same.
+     * @param a the first paint.
+     * @param b the second paint.
+     * @return true if the metric affecting state of both paints is equal.
+     */
+    private static boolean sameMetrics(TextPaint a, TextPaint b) {
+        return a.getTextSize() == b.getTextSize()
+                && a.getTypeface() == b.getTypeface()
+                && a.getTextScaleX() == b.getTextScaleX()
+                && a.getTextSkewX() == b.getTextSkewX()
+                && getLetterSpacing(a) == getLetterSpacing(b)
+                && a.getFlags() == b.getFlags();
+    }
+
+    /**
+     * Get the letter spacing of the paint, which is only available since Lollipop.
+     * @param paint the paint to get the letter spacing from.
+     * @return the letter spacing, or 0 on older platforms.
+     */
+    private static float getLetterSpacing(TextPaint paint) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? paint.getLetterSpacing() : 0;
+    }
+
+    /**
+     * Check whether two texts lay out the same. Plain texts are compared by content, while styled texts are compared by
+     * reference since their spans may change the layout.
+     * @param a the first text.
+     * @param b the second text.
+     * @return true if a layout built for one can be reused for the other.
+     */
+    private static boolean sameText(CharSequence a, CharSequence b) {
+        if (a == b) {
+            return true;
+        }
+        if (a == null || b == null || a instanceof Spanned || b instanceof Spanned) {
+            return false;
+        }
+        int length = a.length();
+        if (length != b.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
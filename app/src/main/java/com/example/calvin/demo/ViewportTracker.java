@@ -0,0 +1,126 @@
+package com.example.calvin.demo;
+
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+/**
+ * Tracks which part of a view is visible on screen, so that a tall view inside a scrolling container only records what can
+ * be seen into its display list. The recorded area reaches past the visible area by a margin of one visible area in each
+ * direction, and the view is only invalidated once anything outside of the recorded area comes into view. Besides scrolling,
+ * that is checked before every frame, so that views moved into view by a translation, an animation, a visibility change or a
+ * relayout of their parent are redrawn as well.
+ *
+ * A software canvas already clips to the area being drawn, so this is only needed for hardware accelerated drawing, where
+ * the whole view is recorded regardless of what is visible.
+ */
+class ViewportTracker implements ViewTreeObserver.OnScrollChangedListener, ViewTreeObserver.OnPreDrawListener {
+
+    //The view being tracked
+    private final View mView;
+
+    //Whether the whole view is drawn while none of it is visible, instead of nothing
+    private final boolean mDrawAllWhileHidden;
+
+    //The visible part of the view in its own coordinates
+    private final Rect mVisibleRect = new Rect();
+
+    //The part of the view recorded by the last draw
+    private final Rect mRecordedRect = new Rect();
+
+    //Whether the last draw recorded only mRecordedRect instead of the whole view
+    private boolean mClipped;
+
+    //The observer the tracker is registered with, null while the view is detached
+    private ViewTreeObserver mObserver;
+
+    /**
+     * @param view the view to be tracked.
+     * @param drawAllWhileHidden true to draw the whole view while none of it is visible, false to draw nothing until some of
+     *                           it comes into view. Nothing is cheaper to record, but redraws the view once it is shown.
+     */
+    ViewportTracker(View view, boolean drawAllWhileHidden) {
+        mView = view;
+        mDrawAllWhileHidden = drawAllWhileHidden;
+    }
+
+    /**
+     * Start following scroll changes and frames. To be called when the view is attached to a window.
+     */
+    void attach() {
+        mObserver = mView.getViewTreeObserver();
+        mObserver.addOnScrollChangedListener(this);
+        mObserver.addOnPreDrawListener(this);
+    }
+
+    /**
+     * Stop following scroll changes and frames. To be called when the view is detached from its window.
+     */
+    void detach() {
+        if (mObserver != null) {
+            ViewTreeObserver observer = mObserver.isAlive() ? mObserver : mView.getViewTreeObserver();
+            observer.removeOnScrollChangedListener(this);
+            observer.removeOnPreDrawListener(this);
+            mObserver = null;
+        }
+        mClipped = false;
+    }
+
+    /**
+     * Get the part of the view to be drawn, and remember it as recorded. While none of the view is visible, that is either the
+     * whole view or an empty area, as chosen at construction.
+     * @param out the rect to receive the area to be drawn in the view's own coordinates.
+     * @return true if only that area has to be drawn, false if the whole view has to.
+     */
+    boolean getDrawRect(Rect out) {
+        if (mObserver == null) {
+            mClipped = false;
+            return false;
+        }
+        int width = mView.getWidth();
+        int height = mView.getHeight();
+        if (!mView.getLocalVisibleRect(mVisibleRect)) {
+            if (mDrawAllWhileHidden) {
+                mClipped = false;
+                return false;
+            }
+            //Nothing is visible, so nothing has to be recorded until it comes into view.
+            mRecordedRect.setEmpty();
+        }else if (mVisibleRect.left <= 0 && mVisibleRect.top <= 0 && mVisibleRect.right >= width && mVisibleRect.bottom >= height) {
+            mClipped = false;
+            return false;
+        }else {
+            int marginX = mVisibleRect.width();
+            int marginY = mVisibleRect.height();
+            mRecordedRect.set(Math.max(mVisibleRect.left - marginX, 0), Math.max(mVisibleRect.top - marginY, 0),
+                    Math.min(mVisibleRect.right + marginX, width), Math.min(mVisibleRect.bottom + marginY, height));
+        }
+        mClipped = true;
+        out.set(mRecordedRect);
+        return true;
+    }
+
+    @Override
+    public void onScrollChanged() {
+        invalidateIfUnrecorded();
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        invalidateIfUnrecorded();
+        return true;
+    }
+
+    /**
+     * Invalidate the view if any of its visible part hasn't been recorded by the last draw.
+     */
+    private void invalidateIfUnrecorded() {
+        if (!mClipped || !mView.getLocalVisibleRect(mVisibleRect)) {
+            return;
+        }
+        if (!mRecordedRect.contains(mVisibleRect)) {
+            mClipped = false;
+            mView.invalidate();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.calvin.demo;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Makes sure that an export reports how it ends, whatever stops it.
+ */
+public class DocumentExporterTest {
+
+    @Test
+    public void exportBitmaps_errorWhileRendering_failsExport() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            DocumentExporter exporter = new DocumentExporter(executor);
+            final OutOfMemoryError error = new OutOfMemoryError();
+            //A title that runs out of memory while being laid out, like a bitmap that can't be allocated.
+            CharSequence title = new CharSequence() {
+                @Override
+                public int length() {
+                    throw error;
+                }
+
+                @Override
+                public char charAt(int index) {
+                    throw error;
+                }
+
+                @Override
+                public CharSequence subSequence(int start, int end) {
+                    throw error;
+                }
+            };
+            DocumentExporter.Spec spec = new DocumentExporter.Spec(new DocumentStyle.Builder().build(), title, "6.9M", 480,
+                    160);
+            RecordingListener listener = new RecordingListener();
+
+            exporter.exportBitmaps(Collections.singletonList(spec), listener);
+
+            assertTrue(listener.mEnded.await(5, TimeUnit.SECONDS));
+            assertTrue(listener.mFailure instanceof ExecutionException);
+            assertSame(error, listener.mFailure.getCause());
+        }finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A listener that remembers the failure of an export and counts down once the export has ended.
+     */
+    static class RecordingListener implements DocumentExporter.Listener {
+
+        private final CountDownLatch mEnded = new CountDownLatch(1);
+
+        private Exception mFailure;
+
+        @Override
+        public void onDocumentExported(int index, Bitmap bitmap) {
+        }
+
+        @Override
+        public void onExportFinished() {
+            mEnded.countDown();
+        }
+
+        @Override
+        public void onExportFailed(int index, Exception e) {
+            mFailure = e;
+            mEnded.countDown();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.calvin.demo;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Makes sure that prefetched documents are dropped once their prefetches are canceled.
+ */
+public class DocumentLayoutPrefetcherTest {
+
+    @Test
+    public void cancel_finishedPrefetch_dropsDocument() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            DocumentLayoutPrefetcher prefetcher = new DocumentLayoutPrefetcher(executor);
+            DocumentStyle style = new DocumentStyle.Builder().build();
+            Future<?> future = prefetcher.prefetch(style, "孩子的教育资源V1.1.pptx", "6.9M", 480);
+            future.get();
+            assertEquals(1, prefetcher.getPendingCount());
+
+            future.cancel(false);
+
+            assertEquals(0, prefetcher.getPendingCount());
+        }finally {
+            executor.shutdown();
+        }
+    }
+}
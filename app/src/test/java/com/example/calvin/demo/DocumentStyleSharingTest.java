@@ -0,0 +1,161 @@
+package com.example.calvin.demo;
+
+import android.content.ContextWrapper;
+import android.graphics.Canvas;
+import android.text.TextPaint;
+
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.*;
+
+/**
+ * Makes sure that views sharing a {@link DocumentStyle} never write into its paints, whatever they change on their own. The
+ * Android framework is stubbed out on the host, so the shared paints are replaced with paints that record their color.
+ */
+public class DocumentStyleSharingTest {
+
+    private static final int BLACK = 0xFF000000;
+
+    private static final int RED = 0xFFFF0000;
+
+    private static final int GRAY = 0xFF888888;
+
+    private static final int BLUE = 0xFF0000FF;
+
+    @Test
+    public void setTitleColor_leavesSharedPaintUntouched() throws Exception {
+        DocumentStyle style = new DocumentStyle.Builder().setTitleColor(BLACK).build();
+        RecordingTextPaint sharedTitlePaint = replacePaint(style, "mTitlePaint", BLACK);
+        DocumentView first = createView(style);
+        DocumentView second = createView(style);
+        Canvas canvas = new Canvas();
+        measureAndDraw(first, canvas);
+        measureAndDraw(second, canvas);
+
+        first.setTitleColor(RED);
+        first.draw(canvas);
+        first.onDraw(canvas);
+        second.draw(canvas);
+        second.onDraw(canvas);
+
+        assertEquals(0, sharedTitlePaint.mColorChanges);
+        assertEquals(BLACK, sharedTitlePaint.getColor());
+        assertSame(style, second.getStyle());
+    }
+
+    @Test
+    public void styleTransition_leavesSharedPaintsOfBothStylesUntouched() throws Exception {
+        DocumentStyle from = new DocumentStyle.Builder().setTitleColor(BLACK).setSubtitleColor(GRAY).build();
+        DocumentStyle to = new DocumentStyle.Builder().setTitleColor(RED).setSubtitleColor(BLUE).build();
+        RecordingTextPaint fromTitlePaint = replacePaint(from, "mTitlePaint", BLACK);
+        RecordingTextPaint fromSubtitlePaint = replacePaint(from, "mSubtitlePaint", GRAY);
+        RecordingTextPaint toTitlePaint = replacePaint(to, "mTitlePaint", RED);
+        RecordingTextPaint toSubtitlePaint = replacePaint(to, "mSubtitlePaint", BLUE);
+        DocumentView animated = createView(from);
+        DocumentView other = createView(from);
+        Canvas canvas = new Canvas();
+        measureAndDraw(animated, canvas);
+        measureAndDraw(other, canvas);
+
+        //The animator is stubbed out on the host, so run the frames of animateTo(to, duration) by hand.
+        Method mutatePaints = DocumentView.class.getDeclaredMethod("mutatePaints", int.class);
+        mutatePaints.setAccessible(true);
+        Field titlePaintFlag = DocumentView.class.getDeclaredField("PAINT_TITLE");
+        titlePaintFlag.setAccessible(true);
+        Field subtitlePaintFlag = DocumentView.class.getDeclaredField("PAINT_SUBTITLE");
+        subtitlePaintFlag.setAccessible(true);
+        mutatePaints.invoke(animated, titlePaintFlag.getInt(null) | subtitlePaintFlag.getInt(null));
+        Method applyTransitionFrame = DocumentView.class.getDeclaredMethod("applyTransitionFrame", DocumentStyle.class,
+                DocumentStyle.class, float.class);
+        applyTransitionFrame.setAccessible(true);
+        for (float fraction = 0.25f; fraction < 1; fraction += 0.25f) {
+            applyTransitionFrame.invoke(animated, from, to, fraction);
+            animated.draw(canvas);
+            animated.onDraw(canvas);
+        }
+        animated.setStyle(to);
+        measureAndDraw(animated, canvas);
+        measureAndDraw(other, canvas);
+
+        assertEquals(0, fromTitlePaint.mColorChanges);
+        assertEquals(0, fromSubtitlePaint.mColorChanges);
+        assertEquals(0, toTitlePaint.mColorChanges);
+        assertEquals(0, toSubtitlePaint.mColorChanges);
+        assertEquals(BLACK, fromTitlePaint.getColor());
+        assertEquals(GRAY, fromSubtitlePaint.getColor());
+    }
+
+    @Test
+    public void styleTransition_styleTakenMidTransition_isNotKeptForLaterFrames() throws Exception {
+        DocumentStyle from = new DocumentStyle.Builder().setTitleColor(BLACK).setSubtitleColor(GRAY).build();
+        DocumentStyle to = new DocumentStyle.Builder().setTitleColor(RED).setSubtitleColor(BLUE).build();
+        DocumentView animated = createView(from);
+        Method applyTransitionFrame = DocumentView.class.getDeclaredMethod("applyTransitionFrame", DocumentStyle.class,
+                DocumentStyle.class, float.class);
+        applyTransitionFrame.setAccessible(true);
+
+        applyTransitionFrame.invoke(animated, from, to, 0.25f);
+        DocumentStyle midTransition = animated.getStyle();
+        applyTransitionFrame.invoke(animated, from, to, 0.5f);
+
+        //Paints don't keep their colors on the host, so only make sure the style is taken from the view again.
+        assertNotSame(midTransition, animated.getStyle());
+    }
+
+    /**
+     * Replace a paint of a style before any view uses it.
+     * @param style the style.
+     * @param field the name of the paint field.
+     * @param color the color of the style for that paint.
+     * @return the paint now shared by the style.
+     */
+    private static RecordingTextPaint replacePaint(DocumentStyle style, String field, int color) throws Exception {
+        RecordingTextPaint paint = new RecordingTextPaint(color);
+        Field paintField = DocumentStyle.class.getDeclaredField(field);
+        paintField.setAccessible(true);
+        paintField.set(style, paint);
+        return paint;
+    }
+
+    private static DocumentView createView(DocumentStyle style) {
+        DocumentView documentView = new DocumentView(new ContextWrapper(null));
+        documentView.setStyle(style);
+        documentView.setTitle("孩子的教育资源V1.1.pptx");
+        documentView.setSubtitle("6.9M");
+        return documentView;
+    }
+
+    private static void measureAndDraw(DocumentView documentView, Canvas canvas) {
+        documentView.onMeasure(0, 0);
+        documentView.draw(canvas);
+        documentView.onDraw(canvas);
+    }
+
+    /**
+     * A paint that keeps its color and counts how often it has been changed.
+     */
+    static class RecordingTextPaint extends TextPaint {
+
+        private int mColor;
+
+        private int mColorChanges;
+
+        RecordingTextPaint(int color) {
+            mColor = color;
+        }
+
+        @Override
+        public void setColor(int color) {
+            mColor = color;
+            mColorChanges++;
+        }
+
+        @Override
+        public int getColor() {
+            return mColor;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.calvin.demo;
+
+import android.content.ContextWrapper;
+import android.graphics.Canvas;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Makes sure that measuring and drawing a {@link DocumentView} with stable content doesn't allocate anything. The Android
+ * framework is stubbed out on the host, so only the allocations of the view's own code are counted: the measure pass, the
+ * layout caches, the geometry and the decoration and border drawing. The stubbed view and text layouts have a size of 0,
+ * so the texts are never placed, and neither is {@link android.text.Layout#draw(Canvas)} reached. The placement is covered
+ * by the allocation test of the layout engine instead, while drawing the layouts can only be checked on a device.
+ */
+public class DocumentViewAllocationTest {
+
+    private static final int WARM_UP_ITERATIONS = 100;
+
+    private static final int ITERATIONS = 10000;
+
+    //Allows for noise in the allocation counter, while any allocation per iteration exceeds it
+    private static final long ALLOCATION_TOLERANCE_IN_BYTES = 256;
+
+    //The JIT compiler allocates on the measured thread now and then, for example when it deoptimizes code and materializes
+    //objects it had eliminated. That only hits some rounds, while an allocation of the view's own code hits every round.
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void measureAndDraw_doNotAllocate() throws Exception {
+        DocumentView documentView = new DocumentView(new ContextWrapper(null));
+        documentView.setTitle("孩子的教育资源V1.1.pptx");
+        documentView.setSubtitle("6.9M");
+        Canvas canvas = new Canvas();
+
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            measureAndDraw(documentView, canvas);
+        }
+
+        //Querying the allocated bytes may allocate by itself, so find out how much and leave it out.
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = getAllocatedBytes(threadId);
+        long overhead = getAllocatedBytes(threadId) - allocatedBefore;
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            allocatedBefore = getAllocatedBytes(threadId);
+            for (int i = 0; i < ITERATIONS; i++) {
+                measureAndDraw(documentView, canvas);
+            }
+            allocated = Math.min(allocated, getAllocatedBytes(threadId) - allocatedBefore - overhead);
+        }
+
+        assertTrue("Measuring and drawing allocated at least " + allocated + " bytes in " + ITERATIONS + " iterations",
+                allocated < ALLOCATION_TOLERANCE_IN_BYTES);
+    }
+
+    private static void measureAndDraw(DocumentView documentView, Canvas canvas) {
+        documentView.onMeasure(0, 0);
+        documentView.draw(canvas);
+        documentView.onDraw(canvas);
+    }
+
+    private static long getAllocatedBytes(long threadId) {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(threadId);
+    }
+}
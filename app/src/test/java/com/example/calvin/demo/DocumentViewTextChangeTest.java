@@ -0,0 +1,55 @@
+package com.example.calvin.demo;
+
+import android.content.ContextWrapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Makes sure that setting a mutable text again lays it out again, even though it is the same object as before.
+ */
+public class DocumentViewTextChangeTest {
+
+    @Test
+    public void setSubtitle_sameMutatedInstance_rebuildsLayout() {
+        RenderStats.setEnabled(true);
+        try {
+            DocumentView documentView = new DocumentView(new ContextWrapper(null));
+            StringBuilder subtitle = new StringBuilder("6.9");
+            documentView.setTitle("孩子的教育资源V1.1.pptx");
+            documentView.setSubtitle(subtitle);
+            documentView.onMeasure(0, 0);
+            documentView.getRenderStats().reset();
+
+            subtitle.append("M");
+            documentView.setSubtitle(subtitle);
+            documentView.onMeasure(0, 0);
+
+            assertTrue(documentView.getRenderStats().snapshot().getLayoutCacheMisses() > 0);
+        }finally {
+            RenderStats.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void setTitle_sameMutatedInstance_rebuildsLayout() {
+        RenderStats.setEnabled(true);
+        try {
+            DocumentView documentView = new DocumentView(new ContextWrapper(null));
+            StringBuilder title = new StringBuilder("孩子的教育资源V1.1");
+            documentView.setTitle(title);
+            documentView.setSubtitle("6.9M");
+            documentView.onMeasure(0, 0);
+            documentView.getRenderStats().reset();
+
+            title.append(".pptx");
+            documentView.setTitle(title);
+            documentView.onMeasure(0, 0);
+
+            assertTrue(documentView.getRenderStats().snapshot().getLayoutCacheMisses() > 0);
+        }finally {
+            RenderStats.setEnabled(false);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.calvin.demo.benchmark;
+
+import com.example.calvin.demo.layout.DocumentLayoutEngine;
+import com.example.calvin.demo.layout.TextMeasurer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link DocumentLayoutEngine#measure(int, int, TextMeasurer)} across text lengths, available
+ * widths and measure modes. Text is measured by {@link MonospaceTextMeasurer}, so the numbers cover the engine and a greedy
+ * line breaker but not the text shaping of a platform.
+ *
+ * Run with ./gradlew :benchmark:jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DocumentLayoutEngineBenchmark {
+
+    //The measure modes to compare, as in a layout with wrap_content, and with a fixed size or match_parent
+    private static final String MODE_WRAP = "wrap";
+    private static final String MODE_EXACT = "exact";
+
+    @Param({"8", "64", "512", "4096"})
+    public int textLength;
+
+    @Param({"120", "480", "1080"})
+    public int width;
+
+    @Param({MODE_WRAP, MODE_EXACT})
+    public String mode;
+
+    private final DocumentLayoutEngine mEngine = new DocumentLayoutEngine();
+    private MonospaceTextMeasurer mMeasurer;
+    private int mWidthMeasureSpec;
+    private int mHeightMeasureSpec;
+
+    @Setup
+    public void setUp() {
+        mEngine.setPadding(16, 16, 16, 16);
+        mEngine.setDecorSize(24);
+        mMeasurer = new MonospaceTextMeasurer(createText(textLength), createText(Math.max(textLength / 8, 1)));
+        if (MODE_EXACT.equals(mode)) {
+            mWidthMeasureSpec = DocumentLayoutEngine.makeMeasureSpec(width, DocumentLayoutEngine.MODE_EXACTLY);
+        }else {
+            mWidthMeasureSpec = DocumentLayoutEngine.makeMeasureSpec(width, DocumentLayoutEngine.MODE_AT_MOST);
+        }
+        mHeightMeasureSpec = DocumentLayoutEngine.makeMeasureSpec(DocumentLayoutEngine.MAX_SIZE, DocumentLayoutEngine.MODE_AT_MOST);
+    }
+
+    @Benchmark
+    public int measure() {
+        mEngine.measure(mWidthMeasureSpec, mHeightMeasureSpec, mMeasurer);
+        return mEngine.getMeasuredHeight();
+    }
+
+    @Benchmark
+    public int measureAndPlace() {
+        mEngine.measure(mWidthMeasureSpec, mHeightMeasureSpec, mMeasurer);
+        int width = mEngine.getMeasuredWidth();
+        int height = mEngine.getMeasuredHeight();
+        mEngine.place(width, height, mEngine.getTextWidth(DocumentLayoutEngine.TEXT_TITLE), mMeasurer.mTitleHeight,
+                mEngine.getTextWidth(DocumentLayoutEngine.TEXT_SUBTITLE), mMeasurer.mSubtitleHeight);
+        return mEngine.getContentTop();
+    }
+
+    /**
+     * Create a text of words of varying length separated by spaces.
+     * @param length the length of the text.
+     * @return the text.
+     */
+    private static char[] createText(int length) {
+        char[] text = new char[length];
+        int wordLength = 0;
+        for (int i = 0; i < length; i++) {
+            if (wordLength >= 3 + i % 7) {
+                text[i] = ' ';
+                wordLength = 0;
+            }else {
+                text[i] = (char) ('a' + i % 26);
+                wordLength++;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Measures every character with the same advance and breaks lines greedily at spaces, or within a word that doesn't fit a
+     * line on its own. Measuring and breaking walk the characters like a platform line breaker does, without the shaping.
+     */
+    private static class MonospaceTextMeasurer implements TextMeasurer {
+
+        private static final int ADVANCE = 14;
+        private static final int LINE_HEIGHT = 20;
+
+        private final char[][] mTexts;
+        private int mTitleHeight;
+        private int mSubtitleHeight;
+
+        private MonospaceTextMeasurer(char[] title, char[] subtitle) {
+            mTexts = new char[][] {title, subtitle};
+        }
+
+        @Override
+        public boolean isEmpty(int text) {
+            return mTexts[text].length == 0;
+        }
+
+        @Override
+        public int measureWidth(int text, int maxWidth) {
+            char[] chars = mTexts[text];
+            int width = 0;
+            for (int i = 0; i < chars.length && width < maxWidth; i++) {
+                width += ADVANCE;
+            }
+            return Math.min(width, maxWidth);
+        }
+
+        @Override
+        public int layout(int text, int width) {
+            char[] chars = mTexts[text];
+            int perLine = Math.max(width / ADVANCE, 1);
+            int lines = 0;
+            int start = 0;
+            while (start < chars.length) {
+                int end = Math.min(start + perLine, chars.length);
+                if (end < chars.length) {
+                    //Break after the last space of the line if there is one.
+                    int space = end;
+                    while (space > start && chars[space - 1] != ' ') {
+                        space--;
+                    }
+                    if (space > start) {
+                        end = space;
+                    }
+                }
+                lines++;
+                start = end;
+            }
+            int height = lines * LINE_HEIGHT;
+            if (text == DocumentLayoutEngine.TEXT_TITLE) {
+                mTitleHeight = height;
+            }else {
+                mSubtitleHeight = height;
+            }
+            return height;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.example.calvin.demo.layout;
+
+/**
+ * The sizing and placement of a document, which is a title above a subtitle framed by a border with a triangle decoration
+ * in the bottom right corner. It doesn't depend on any platform, text is measured through a {@link TextMeasurer}, so it can be
+ * tested and benchmarked on the JVM.
+ *
+ * The engine keeps its inputs and results in fields that are reused for every pass, so measuring and placing don't allocate.
+ * An engine is meant to be owned by a single document and must not be shared between threads.
+ *
+ * Measure specs are encoded the same way as android.view.View.MeasureSpec, the mode in the top two bits and the size in the
+ * remaining ones.
+ */
+public final class DocumentLayoutEngine {
+
+    /**
+     * The title text.
+     */
+    public static final int TEXT_TITLE = 0;
+
+    /**
+     * The subtitle text.
+     */
+    public static final int TEXT_SUBTITLE = 1;
+
+    /**
+     * Measure spec mode: the parent imposes no constraint.
+     */
+    public static final int MODE_UNSPECIFIED = 0;
+
+    /**
+     * Measure spec mode: the parent determines the exact size.
+     */
+    public static final int MODE_EXACTLY = 1 << 30;
+
+    /**
+     * Measure spec mode: the size can be up to the given one.
+     */
+    public static final int MODE_AT_MOST = 2 << 30;
+
+    /**
+     * The largest size a measure spec can hold.
+     */
+    public static final int MAX_SIZE = (1 << 30) - 1;
+
+    private static final int MODE_MASK = 3 << 30;
+
+    private int mPaddingLeft;
+    private int mPaddingTop;
+    private int mPaddingRight;
+    private int mPaddingBottom;
+    private float mDecorSize;
+
+    //The results of the last measure pass
+    private int mMeasuredWidth;
+    private int mMeasuredHeight;
+    private int mDesiredWidth;
+    private int mDesiredHeight;
+    private int mTitleWidth;
+    private int mSubtitleWidth;
+
+    //The results of the last placement
+    private boolean mContentVisible;
+    private int mContentLeft;
+    private int mContentTop;
+
+    /**
+     * Set the padding of the document. The decoration size is used instead of the right and bottom padding if it is larger.
+     * @param left the left padding in pixel.
+     * @param top the top padding in pixel.
+     * @param right the right padding in pixel.
+     * @param bottom the bottom padding in pixel.
+     */
+    public void setPadding(int left, int top, int right, int bottom) {
+        mPaddingLeft = left;
+        mPaddingTop = top;
+        mPaddingRight = right;
+        mPaddingBottom = bottom;
+    }
+
+    /**
+     * Set the size of the triangle decoration.
+     * @param decorSize the size of the decoration in pixel.
+     */
+    public void setDecorSize(float decorSize) {
+        mDecorSize = decorSize;
+    }
+
+    /**
+     * Get the right padding, which takes the decoration into account so that the texts don't overlap with it.
+     * @return the larger of right padding and decoration size.
+     */
+    public int getEffectivePaddingRight() {
+        return Math.max(mPaddingRight, (int) Math.ceil(mDecorSize));
+    }
+
+    /**
+     * Get the bottom padding, which takes the decoration into account so that the texts don't overlap with it.
+     * @return the larger of bottom padding and decoration size.
+     */
+    public int getEffectivePaddingBottom() {
+        return Math.max(mPaddingBottom, (int) Math.ceil(mDecorSize));
+    }
+
+    /**
+     * Get the horizontal padding on both sides, taking the decoration into account.
+     * @return the horizontal padding in pixel.
+     */
+    public int getHorizontalPadding() {
+        return mPaddingLeft + getEffectivePaddingRight();
+    }
+
+    /**
+     * Measure the document based on the given requirements in the following steps.
+     *
+     * 1. For each text, measure the width required to draw it on a single line and take the largest as the desired content
+     * width. Measuring stops at the width available, since a text that doesn't fit has to wrap anyway.
+     *
+     * 2. Make sure the total desired width doesn't exceed total width available. Without a limit, the desired width is used.
+     *
+     * 3. Make use of the content space for each text separately so that a shorter text doesn't have to take the whole line. If
+     * there is no content space available after excluding the padding, then the text width is 0. Lay out each text at its
+     * width.
+     *
+     * 4. If a text is not empty, add its height to desired content height.
+     *
+     * 5. Make sure the total desired height doesn't exceed total height available. Without a limit, the desired height is used.
+     *
+     * @param widthMeasureSpec horizontal space requirements as imposed by the parent.
+     * @param heightMeasureSpec vertical space requirements as imposed by the parent.
+     * @param measurer the measurer of the texts.
+     */
+    public void measure(int widthMeasureSpec, int heightMeasureSpec, TextMeasurer measurer) {
+        int paddingRight = getEffectivePaddingRight();
+        int paddingBottom = getEffectivePaddingBottom();
+        int availableContentWidth = getAvailableContentWidth(widthMeasureSpec, mPaddingLeft + paddingRight);
+
+        int desiredTitleWidth = measurer.isEmpty(TEXT_TITLE) ? 0 : measurer.measureWidth(TEXT_TITLE, availableContentWidth);
+        int desiredSubtitleWidth = measurer.isEmpty(TEXT_SUBTITLE) ? 0 : measurer.measureWidth(TEXT_SUBTITLE, availableContentWidth);
+
+        int desiredWidth = Math.max(desiredTitleWidth, desiredSubtitleWidth) + mPaddingLeft + paddingRight;
+        int measuredWidth = resolveWidth(widthMeasureSpec, desiredWidth);
+
+        //If the padding is too big for the document to take any content, use 0 as content width.
+        int contentWidth = Math.max(measuredWidth - mPaddingLeft - paddingRight, 0);
+        //A text shorter than the content width uses its own width.
+        mTitleWidth = Math.min(contentWidth, desiredTitleWidth);
+        mSubtitleWidth = Math.min(contentWidth, desiredSubtitleWidth);
+        int titleHeight = measurer.layout(TEXT_TITLE, mTitleWidth);
+        int subtitleHeight = measurer.layout(TEXT_SUBTITLE, mSubtitleWidth);
+
+        int desiredHeight = mPaddingTop + paddingBottom;
+        if (!measurer.isEmpty(TEXT_TITLE)) {
+            desiredHeight += titleHeight;
+        }
+        if (!measurer.isEmpty(TEXT_SUBTITLE)) {
+            desiredHeight += subtitleHeight;
+        }
+
+        int measuredHeight;
+        if (getMode(heightMeasureSpec) == MODE_EXACTLY) {
+            measuredHeight = getSize(heightMeasureSpec);
+        }else if (getMode(heightMeasureSpec) == MODE_UNSPECIFIED) {
+            measuredHeight = desiredHeight;
+        }else {
+            measuredHeight = Math.min(getSize(heightMeasureSpec), desiredHeight);
+        }
+
+        mMeasuredWidth = measuredWidth;
+        mMeasuredHeight = measuredHeight;
+        mDesiredWidth = desiredWidth;
+        mDesiredHeight = desiredHeight;
+    }
+
+    /**
+     * @return the measured width of the last measure pass.
+     */
+    public int getMeasuredWidth() {
+        return mMeasuredWidth;
+    }
+
+    /**
+     * @return the measured height of the last measure pass.
+     */
+    public int getMeasuredHeight() {
+        return mMeasuredHeight;
+    }
+
+    /**
+     * @return the width required to draw everything including padding, as of the last measure pass.
+     */
+    public int getDesiredWidth() {
+        return mDesiredWidth;
+    }
+
+    /**
+     * @return the height required to draw everything including padding, as of the last measure pass.
+     */
+    public int getDesiredHeight() {
+        return mDesiredHeight;
+    }
+
+    /**
+     * Get the width a text has been laid out at in the last measure pass.
+     * @param text either {@link #TEXT_TITLE} or {@link #TEXT_SUBTITLE}.
+     * @return the width in pixel.
+     */
+    public int getTextWidth(int text) {
+        return text == TEXT_TITLE ? mTitleWidth : mSubtitleWidth;
+    }
+
+    /**
+     * Place the laid out texts centered in the content area of a document of the given size. Texts of width 0 are left out.
+     * If the texts don't fit the content height, nothing is to be drawn.
+     * @param width the width of the document.
+     * @param height the height of the document.
+     * @param titleWidth the width of the laid out title.
+     * @param titleHeight the height of the laid out title.
+     * @param subtitleWidth the width of the laid out subtitle.
+     * @param subtitleHeight the height of the laid out subtitle.
+     */
+    public void place(int width, int height, int titleWidth, int titleHeight, int subtitleWidth, int subtitleHeight) {
+        int totalWidth = width - mPaddingLeft - getEffectivePaddingRight();
+        int totalHeight = height - mPaddingTop - getEffectivePaddingBottom();
+        int contentWidth = 0;
+        int contentHeight = 0;
+        if (titleWidth > 0) {
+            contentWidth = Math.max(contentWidth, titleWidth);
+            contentHeight += titleHeight;
+        }
+        if (subtitleWidth > 0) {
+            contentWidth = Math.max(contentWidth, subtitleWidth);
+            contentHeight += subtitleHeight;
+        }
+        mContentVisible = contentHeight <= totalHeight;
+        mContentLeft = mPaddingLeft + (totalWidth - contentWidth) / 2;
+        mContentTop = mPaddingTop + (totalHeight - contentHeight) / 2;
+    }
+
+    /**
+     * @return whether the texts fit the content area as of the last placement.
+     */
+    public boolean isContentVisible() {
+        return mContentVisible;
+    }
+
+    /**
+     * @return the left edge of the texts as of the last placement.
+     */
+    public int getContentLeft() {
+        return mContentLeft;
+    }
+
+    /**
+     * @return the top edge of the title, or of the subtitle if there is no title, as of the last placement.
+     */
+    public int getContentTop() {
+        return mContentTop;
+    }
+
+    /**
+     * Calculate the width available for the content from the width requirement imposed by the parent.
+     * @param widthMeasureSpec horizontal space requirements as imposed by the parent.
+     * @param horizontalPadding the padding on both sides including decoration.
+     * @return the available content width, Integer.MAX_VALUE if there is no limit.
+     */
+    public static int getAvailableContentWidth(int widthMeasureSpec, int horizontalPadding) {
+        if (getMode(widthMeasureSpec) == MODE_UNSPECIFIED) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(getSize(widthMeasureSpec) - horizontalPadding, 0);
+    }
+
+    /**
+     * Calculate the measured width from the desired width and the width requirement imposed by the parent.
+     * @param widthMeasureSpec horizontal space requirements as imposed by the parent.
+     * @param desiredWidth the width required to draw everything including padding.
+     * @return the measured width, which doesn't exceed total width available. The size of an unspecified requirement is no
+     * limit, so the desired width is used then.
+     */
+    public static int resolveWidth(int widthMeasureSpec, int desiredWidth) {
+        if (getMode(widthMeasureSpec) == MODE_EXACTLY) {
+            return getSize(widthMeasureSpec);
+        }
+        if (getMode(widthMeasureSpec) == MODE_UNSPECIFIED) {
+            return desiredWidth;
+        }
+        return Math.min(getSize(widthMeasureSpec), desiredWidth);
+    }
+
+    /**
+     * Create a measure spec.
+     * @param size the size.
+     * @param mode one of the MODE_* constants.
+     * @return the measure spec.
+     */
+    public static int makeMeasureSpec(int size, int mode) {
+        return (size & ~MODE_MASK) | (mode & MODE_MASK);
+    }
+
+    /**
+     * @param measureSpec a measure spec.
+     * @return the mode of the measure spec.
+     */
+    public static int getMode(int measureSpec) {
+        return measureSpec & MODE_MASK;
+    }
+
+    /**
+     * @param measureSpec a measure spec.
+     * @return the size of the measure spec.
+     */
+    public static int getSize(int measureSpec) {
+        return measureSpec & ~MODE_MASK;
+    }
+}
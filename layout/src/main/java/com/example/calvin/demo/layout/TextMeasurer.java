@@ -0,0 +1,31 @@
+package com.example.calvin.demo.layout;
+
+/**
+ * Measures and lays out the texts of a document for {@link DocumentLayoutEngine}. The texts are identified by
+ * {@link DocumentLayoutEngine#TEXT_TITLE} and {@link DocumentLayoutEngine#TEXT_SUBTITLE}, so the engine doesn't need to know
+ * how text is represented or rendered on the platform.
+ */
+public interface TextMeasurer {
+
+    /**
+     * @param text the text, either {@link DocumentLayoutEngine#TEXT_TITLE} or {@link DocumentLayoutEngine#TEXT_SUBTITLE}.
+     * @return true if the text is empty and takes no space.
+     */
+    boolean isEmpty(int text);
+
+    /**
+     * Measure the width required to draw the text on a single line. Measuring may stop once the text exceeds the given width.
+     * @param text the text, either {@link DocumentLayoutEngine#TEXT_TITLE} or {@link DocumentLayoutEngine#TEXT_SUBTITLE}.
+     * @param maxWidth the width available, Integer.MAX_VALUE if unlimited.
+     * @return the desired width in pixel, which may be capped at the given width.
+     */
+    int measureWidth(int text, int maxWidth);
+
+    /**
+     * Lay out the text wrapped at the given width. This is called for empty texts as well.
+     * @param text the text, either {@link DocumentLayoutEngine#TEXT_TITLE} or {@link DocumentLayoutEngine#TEXT_SUBTITLE}.
+     * @param width the wrap width in pixel.
+     * @return the height of the laid out text in pixel.
+     */
+    int layout(int text, int width);
+}
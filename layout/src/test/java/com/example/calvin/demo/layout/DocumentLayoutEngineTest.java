@@ -0,0 +1,198 @@
+package com.example.calvin.demo.layout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the sizing and placement of {@link DocumentLayoutEngine} with texts of fixed size, 10 pixel per character and line.
+ */
+public class DocumentLayoutEngineTest {
+
+    private static final int WARM_UP_ITERATIONS = 100;
+
+    private static final int ITERATIONS = 10000;
+
+    //Allows for noise in the allocation counter, while any allocation per iteration exceeds it
+    private static final long ALLOCATION_TOLERANCE_IN_BYTES = 256;
+
+    //The JIT compiler allocates on the measured thread now and then, so take the least allocating of several rounds.
+    private static final int ROUNDS = 5;
+
+    private DocumentLayoutEngine mEngine;
+
+    @Before
+    public void setUp() throws Exception {
+        mEngine = new DocumentLayoutEngine();
+        mEngine.setPadding(5, 6, 7, 8);
+    }
+
+    @Test
+    public void measure_wrapContent_usesWidestText() throws Exception {
+        mEngine.measure(atMost(1000), atMost(1000), new FixedTextMeasurer("title", "sub"));
+
+        assertEquals(50 + 5 + 7, mEngine.getMeasuredWidth());
+        assertEquals(20 + 6 + 8, mEngine.getMeasuredHeight());
+        assertEquals(50, mEngine.getTextWidth(DocumentLayoutEngine.TEXT_TITLE));
+        assertEquals(30, mEngine.getTextWidth(DocumentLayoutEngine.TEXT_SUBTITLE));
+    }
+
+    @Test
+    public void measure_exactly_wrapsTextToContentWidth() throws Exception {
+        FixedTextMeasurer measurer = new FixedTextMeasurer("a long title", "");
+        mEngine.measure(exactly(52), exactly(200), measurer);
+
+        assertEquals(52, mEngine.getMeasuredWidth());
+        assertEquals(200, mEngine.getMeasuredHeight());
+        assertEquals(40, mEngine.getTextWidth(DocumentLayoutEngine.TEXT_TITLE));
+        //12 characters at 4 per line.
+        assertEquals(30 + 6 + 8, mEngine.getDesiredHeight());
+        //The empty subtitle is left out.
+        assertEquals(0, mEngine.getTextWidth(DocumentLayoutEngine.TEXT_SUBTITLE));
+    }
+
+    @Test
+    public void measure_atMost_clampsToAvailableSize() throws Exception {
+        mEngine.measure(atMost(40), atMost(20), new FixedTextMeasurer("a long title", "sub"));
+
+        assertEquals(40, mEngine.getMeasuredWidth());
+        assertEquals(20, mEngine.getMeasuredHeight());
+        assertEquals(28, mEngine.getTextWidth(DocumentLayoutEngine.TEXT_TITLE));
+        assertTrue(mEngine.getDesiredHeight() > 20);
+    }
+
+    @Test
+    public void measure_unspecified_doesNotLimitWidth() throws Exception {
+        FixedTextMeasurer measurer = new FixedTextMeasurer("a long title", "sub");
+        mEngine.measure(DocumentLayoutEngine.makeMeasureSpec(0, DocumentLayoutEngine.MODE_UNSPECIFIED), atMost(1000), measurer);
+
+        assertEquals(Integer.MAX_VALUE, measurer.mLastMaxWidth);
+        assertEquals(120 + 5 + 7, mEngine.getDesiredWidth());
+        assertEquals(120 + 5 + 7, mEngine.getMeasuredWidth());
+        assertEquals(120, mEngine.getTextWidth(DocumentLayoutEngine.TEXT_TITLE));
+        //Both texts fit on a single line.
+        assertEquals(20 + 6 + 8, mEngine.getDesiredHeight());
+    }
+
+    @Test
+    public void measure_unspecifiedHeight_usesDesiredHeight() throws Exception {
+        mEngine.measure(exactly(52), DocumentLayoutEngine.makeMeasureSpec(0, DocumentLayoutEngine.MODE_UNSPECIFIED),
+                new FixedTextMeasurer("a long title", ""));
+
+        assertEquals(30 + 6 + 8, mEngine.getMeasuredHeight());
+    }
+
+    @Test
+    public void measure_largeDecoration_replacesPadding() throws Exception {
+        mEngine.setDecorSize(19.5f);
+        mEngine.measure(atMost(1000), atMost(1000), new FixedTextMeasurer("title", "sub"));
+
+        assertEquals(50 + 5 + 20, mEngine.getMeasuredWidth());
+        assertEquals(20 + 6 + 20, mEngine.getMeasuredHeight());
+    }
+
+    @Test
+    public void place_centersContent() throws Exception {
+        mEngine.place(112, 114, 50, 10, 30, 10);
+
+        assertTrue(mEngine.isContentVisible());
+        assertEquals(5 + 25, mEngine.getContentLeft());
+        assertEquals(6 + 40, mEngine.getContentTop());
+    }
+
+    @Test
+    public void place_contentTooHigh_isNotVisible() throws Exception {
+        mEngine.place(112, 30, 50, 10, 30, 10);
+
+        assertFalse(mEngine.isContentVisible());
+    }
+
+    @Test
+    public void measureAndPlace_doNotAllocate() throws Exception {
+        FixedTextMeasurer measurer = new FixedTextMeasurer("a long title", "sub");
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            measureAndPlace(measurer);
+        }
+
+        //Querying the allocated bytes may allocate by itself, so find out how much and leave it out.
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = getAllocatedBytes(threadId);
+        long overhead = getAllocatedBytes(threadId) - allocatedBefore;
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            allocatedBefore = getAllocatedBytes(threadId);
+            for (int i = 0; i < ITERATIONS; i++) {
+                measureAndPlace(measurer);
+            }
+            allocated = Math.min(allocated, getAllocatedBytes(threadId) - allocatedBefore - overhead);
+        }
+
+        assertTrue(mEngine.isContentVisible());
+        assertTrue("Measuring and placing allocated at least " + allocated + " bytes in " + ITERATIONS + " iterations",
+                allocated < ALLOCATION_TOLERANCE_IN_BYTES);
+    }
+
+    @Test
+    public void measureSpec_roundTrips() throws Exception {
+        int spec = DocumentLayoutEngine.makeMeasureSpec(DocumentLayoutEngine.MAX_SIZE, DocumentLayoutEngine.MODE_AT_MOST);
+
+        assertEquals(DocumentLayoutEngine.MODE_AT_MOST, DocumentLayoutEngine.getMode(spec));
+        assertEquals(DocumentLayoutEngine.MAX_SIZE, DocumentLayoutEngine.getSize(spec));
+    }
+
+    /**
+     * Measure and place the texts the way a view does on every frame, with texts of non-zero size.
+     * @param measurer the measurer of the texts.
+     */
+    private void measureAndPlace(FixedTextMeasurer measurer) {
+        mEngine.measure(exactly(112), exactly(114), measurer);
+        mEngine.place(112, 114, mEngine.getTextWidth(DocumentLayoutEngine.TEXT_TITLE), 30,
+                mEngine.getTextWidth(DocumentLayoutEngine.TEXT_SUBTITLE), 10);
+    }
+
+    private static long getAllocatedBytes(long threadId) {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(threadId);
+    }
+
+    private static int atMost(int size) {
+        return DocumentLayoutEngine.makeMeasureSpec(size, DocumentLayoutEngine.MODE_AT_MOST);
+    }
+
+    private static int exactly(int size) {
+        return DocumentLayoutEngine.makeMeasureSpec(size, DocumentLayoutEngine.MODE_EXACTLY);
+    }
+
+    /**
+     * Measures every character 10 pixel wide and every line 10 pixel high, wrapping at any character. Like a real line
+     * breaker, it puts at least one character on every line, however narrow the width is.
+     */
+    private static class FixedTextMeasurer implements TextMeasurer {
+
+        private final String[] mTexts;
+        private int mLastMaxWidth;
+
+        private FixedTextMeasurer(String title, String subtitle) {
+            mTexts = new String[] {title, subtitle};
+        }
+
+        @Override
+        public boolean isEmpty(int text) {
+            return mTexts[text].isEmpty();
+        }
+
+        @Override
+        public int measureWidth(int text, int maxWidth) {
+            mLastMaxWidth = maxWidth;
+            return Math.min(mTexts[text].length() * 10, maxWidth);
+        }
+
+        @Override
+        public int layout(int text, int width) {
+            int perLine = Math.max(width / 10, 1);
+            return (mTexts[text].length() + perLine - 1) / perLine * 10;
+        }
+    }
+}